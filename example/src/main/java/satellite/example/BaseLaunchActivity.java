@@ -12,6 +12,7 @@ import rx.Observable;
 import rx.Subscription;
 import rx.subscriptions.Subscriptions;
 import satellite.ReconnectableMap;
+import satellite.RestartableId;
 import satellite.example.base.BaseActivity;
 
 import static rx.android.schedulers.AndroidSchedulers.mainThread;
@@ -33,7 +34,7 @@ public abstract class BaseLaunchActivity extends BaseActivity {
                 .subscribe(ignored -> {
                     StringBuilder builder = new StringBuilder();
                     builder.append("connections:\n");
-                    for (String key : ReconnectableMap.INSTANCE.keys())
+                    for (RestartableId key : ReconnectableMap.INSTANCE.keys())
                         builder.append(key).append("\n");
                     TextView report = (TextView)findViewById(R.id.stationReport);
                     report.setText(builder.toString());
@@ -15,6 +15,8 @@ import satellite.Restartable;
 import satellite.RestartableSet;
 import valuemap.ValueMap;
 
+import static rx.android.schedulers.AndroidSchedulers.mainThread;
+
 /**
  * This is an example activity that eliminates code duplication when dealing with
  * {@link Restartable} and {@link RestartableSet}.
@@ -65,10 +67,10 @@ public class BaseActivity extends Activity implements Launcher {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (savedInstanceState == null)
-            restartables = new RestartableSet(out = new ValueMap.Builder());
+            restartables = new RestartableSet(out = new ValueMap.Builder(), mainThread());
         else {
             ValueMap map = savedInstanceState.getParcelable("restartables");
-            restartables = new RestartableSet(map, out = map.toBuilder());
+            restartables = new RestartableSet(map, out = map.toBuilder(), mainThread());
         }
     }
 
@@ -15,6 +15,8 @@ import satellite.ObservableFactoryNoArg;
 import satellite.RestartableSet;
 import valuemap.ValueMap;
 
+import static rx.android.schedulers.AndroidSchedulers.mainThread;
+
 public class BaseFragment extends Fragment implements Launcher {
 
     private RestartableSet restartables;
@@ -70,10 +72,10 @@ public class BaseFragment extends Fragment implements Launcher {
     public void onCreate(Bundle bundle) {
         super.onCreate(bundle);
         if (bundle == null)
-            restartables = new RestartableSet(out = new ValueMap.Builder());
+            restartables = new RestartableSet(out = new ValueMap.Builder(), mainThread());
         else {
             ValueMap map = bundle.getParcelable("restartables");
-            restartables = new RestartableSet(map, out = map.toBuilder());
+            restartables = new RestartableSet(map, out = map.toBuilder(), mainThread());
         }
     }
 
@@ -19,6 +19,8 @@ import satellite.ObservableFactoryNoArg;
 import satellite.RestartableSet;
 import valuemap.ValueMap;
 
+import static rx.android.schedulers.AndroidSchedulers.mainThread;
+
 public class BaseLayout extends FrameLayout implements Launcher {
 
     private RestartableSet restartables;
@@ -78,7 +80,7 @@ public class BaseLayout extends FrameLayout implements Launcher {
         Bundle bundle = (Bundle)state;
         super.onRestoreInstanceState(bundle.getParcelable("super"));
         ValueMap map = bundle.getParcelable("restartables");
-        restartables = new RestartableSet(map, out = map.toBuilder());
+        restartables = new RestartableSet(map, out = map.toBuilder(), mainThread());
     }
 
     @Override
@@ -97,7 +99,7 @@ public class BaseLayout extends FrameLayout implements Launcher {
             return;
 
         if (restartables == null)
-            restartables = new RestartableSet(out = new ValueMap.Builder());
+            restartables = new RestartableSet(out = new ValueMap.Builder(), mainThread());
 
         subscription = onConnect();
     }
@@ -0,0 +1,109 @@
+package satellite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func0;
+import rx.subjects.PublishSubject;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReconnectableMapBenchmark {
+
+    private static final RestartableId KEY = RestartableId.next();
+    private static final int ITEMS = 1000;
+
+    @Param({"SINGLE", "LATEST", "REPLAY", "REPLAY_100", "PUBLISH"})
+    String method;
+
+    private DeliveryMethod deliveryMethod;
+
+    private final Func0<Observable<Integer>> just = new Func0<Observable<Integer>>() {
+        @Override
+        public Observable<Integer> call() {
+            return Observable.just(1);
+        }
+    };
+
+    @Setup
+    public void setup() {
+        deliveryMethod = deliveryMethod(method);
+    }
+
+    @Benchmark
+    public void subscribeAndDismiss(Blackhole blackhole) {
+        ReconnectableMap.INSTANCE.channel(KEY, deliveryMethod, just).subscribe(consumer(blackhole));
+        ReconnectableMap.INSTANCE.dismiss(KEY);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void deliver(Blackhole blackhole) {
+        final PublishSubject<Integer> source = PublishSubject.create();
+        ReconnectableMap.INSTANCE.channel(KEY, deliveryMethod, new Func0<Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call() {
+                return source;
+            }
+        }).subscribe(consumer(blackhole));
+
+        for (int i = 0; i < ITEMS; i++)
+            source.onNext(i);
+
+        ReconnectableMap.INSTANCE.dismiss(KEY);
+    }
+
+    static <T> Subscriber<T> consumer(final Blackhole blackhole) {
+        return new Subscriber<T>() {
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                throw new RuntimeException(e);
+            }
+
+            @Override
+            public void onNext(T value) {
+                blackhole.consume(value);
+            }
+        };
+    }
+
+    private static DeliveryMethod deliveryMethod(String name) {
+        switch (name) {
+            case "SINGLE":
+                return DeliveryMethod.SINGLE;
+            case "LATEST":
+                return DeliveryMethod.LATEST;
+            case "REPLAY":
+                return DeliveryMethod.REPLAY;
+            case "REPLAY_100":
+                return DeliveryMethod.replay(100);
+            case "PUBLISH":
+                return DeliveryMethod.PUBLISH;
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
@@ -0,0 +1,64 @@
+package satellite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscription;
+import valuemap.ValueMap;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RestartableBenchmark {
+
+    private final ArrayList<String> argument = new ArrayList<>();
+    private Restartable restartable;
+    private Subscription subscription;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        argument.add("argument");
+        restartable = new Restartable(ValueMap.builder());
+        subscription = restartable
+            .channel(DeliveryMethod.LATEST, new ObservableFactory<Object, Object>() {
+                @Override
+                public Observable<Object> call(Object arg) {
+                    return Observable.just(arg);
+                }
+            })
+            .subscribe(ReconnectableMapBenchmark.consumer(blackhole));
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.unsubscribe();
+        restartable.dismiss();
+    }
+
+    @Benchmark
+    public void launch() {
+        restartable.launch();
+    }
+
+    @Benchmark
+    public void launchWithArgument() {
+        restartable.launch(argument);
+    }
+}
@@ -0,0 +1,57 @@
+package valuemap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ParcelFn} round trips with the default codec, the JVM counterpart of valuemapbenchmark`s ParcelFnBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private static final String STRING = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+    private static final Integer INTEGER = 1;
+    private static final int[] INT_ARRAY = {1, 2, 3, 4, 5, 6, 7, 8};
+    private static final ArrayList<Object> LIST = new ArrayList<>();
+
+    static {
+        LIST.add(INTEGER);
+        LIST.add(STRING);
+        LIST.add(INT_ARRAY);
+    }
+
+    @Benchmark
+    public Object string() {
+        return ParcelFn.unmarshall(ParcelFn.marshall(STRING));
+    }
+
+    @Benchmark
+    public Object integer() {
+        return ParcelFn.unmarshall(ParcelFn.marshall(INTEGER));
+    }
+
+    @Benchmark
+    public Object intArray() {
+        return ParcelFn.unmarshall(ParcelFn.marshall(INT_ARRAY));
+    }
+
+    @Benchmark
+    public Object list() {
+        return ParcelFn.unmarshall(ParcelFn.marshall(LIST));
+    }
+}
@@ -0,0 +1,95 @@
+package valuemap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueMapBenchmark {
+
+    private static final String STRING1 = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+    private static final String STRING2 = "Sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
+
+    @Param({"10", "1000"})
+    int size;
+
+    private final ArrayList<String> list = new ArrayList<>();
+    private ValueMap map;
+    private ValueMap cachingMap;
+    private ValueMap.Builder builder;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        list.add(STRING1);
+        list.add(STRING2);
+
+        ValueMap.Builder builder = ValueMap.builder();
+        for (int i = 0; i < size; i++) {
+            builder.put("key" + i, i);
+            builder.child("child" + i).put("value", i);
+        }
+        builder.put("list", list);
+
+        this.map = builder.build();
+        this.cachingMap = map.cachingView();
+        this.builder = map.toBuilder();
+    }
+
+    @Benchmark
+    public ValueMap.Builder putImmutable() {
+        return builder.put("key0", (counter++ & 1) == 0 ? STRING1 : STRING2);
+    }
+
+    @Benchmark
+    public ValueMap.Builder putMutable() {
+        return builder.put("list", list);
+    }
+
+    @Benchmark
+    public Object getImmutable() {
+        return map.get("key0");
+    }
+
+    @Benchmark
+    public Object getMutable() {
+        return map.get("list");
+    }
+
+    @Benchmark
+    public Object getMutableCaching() {
+        return cachingMap.get("list");
+    }
+
+    @Benchmark
+    public ValueMap toBuilderAndBuild() {
+        return map.toBuilder().put("key0", STRING1).build();
+    }
+
+    @Benchmark
+    public ValueMap buildUnchanged() {
+        return builder.build();
+    }
+
+    @Benchmark
+    public ValueMap buildAfterChildChange() {
+        builder.child("child0").put("value", (counter++ & 1) == 0 ? STRING1 : STRING2);
+        return builder.build();
+    }
+}
@@ -0,0 +1,250 @@
+package satellite;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.MissingBackpressureException;
+import rx.subjects.Subject;
+
+/**
+ * A delivery method that puts a bounded buffer between a channel and each of its subscribers.
+ * The buffer honors subscriber requests, so a slow subscriber (for example one which uses
+ * {@link Observable#observeOn(rx.Scheduler)}) does not get flooded by a fast observable.
+ *
+ * When the buffer is full, the {@link Overflow} strategy decides what happens to a new value.
+ * onError notifications are never dropped.
+ *
+ * Instances can be created with {@link DeliveryMethod#buffered(DeliveryMethod, int, Overflow)}.
+ */
+public class BufferedDeliveryMethod extends DeliveryMethod {
+
+    /**
+     * Buffer overflow strategies.
+     */
+    public enum Overflow {
+
+        /**
+         * The oldest buffered value is dropped to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * The new value is dropped.
+         */
+        DROP_LATEST,
+
+        /**
+         * The new value replaces the newest buffered value.
+         */
+        CONFLATE,
+
+        /**
+         * The buffer unsubscribes from the channel and the subscriber gets terminated with
+         * {@link Subscriber#onError(Throwable)} with {@link MissingBackpressureException} after the buffered values,
+         * like {@link Observable#onBackpressureBuffer(long)} does.
+         */
+        ERROR
+    }
+
+    private final DeliveryMethod method;
+    private final int capacity;
+    private final Overflow overflow;
+    private final AtomicLong dropped = new AtomicLong();
+
+    BufferedDeliveryMethod(DeliveryMethod method, int capacity, Overflow overflow) {
+        super(method + "+BUFFER(" + capacity + ", " + overflow + ")");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        if (overflow == null)
+            throw new NullPointerException("overflow");
+        this.method = method;
+        this.capacity = capacity;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Returns the number of values that have been dropped because of buffer overflows,
+     * over all channels which use this delivery method.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    <T> Subject<T, T> createSubject() {
+        return method.createSubject();
+    }
+
+    @Override
+    void onNext(Restartable restartable) {
+        method.onNext(restartable);
+    }
+
+    @Override
+    int persistedSize() {
+        return method.persistedSize();
+    }
+
+    @Override
+    <T> List<Notification<T>> restore(RestartableId key) {
+        return method.restore(key);
+    }
+
+    @Override
+    void onNotification(RestartableId key, Notification<?> notification) {
+        method.onNotification(key, notification);
+    }
+
+    @Override
+    void onDismiss(RestartableId key) {
+        method.onDismiss(key);
+    }
+
+    @Override
+    <T> Observable<Notification<T>> deliver(Observable<Notification<T>> channel) {
+        return method.deliver(channel).lift(new Observable.Operator<Notification<T>, Notification<T>>() {
+            @Override
+            public Subscriber<? super Notification<T>> call(Subscriber<? super Notification<T>> child) {
+                final BufferSubscriber<T> parent = new BufferSubscriber<>(child);
+                child.add(parent);
+                child.setProducer(new Producer() {
+                    @Override
+                    public void request(long n) {
+                        parent.requestMore(n);
+                    }
+                });
+                return parent;
+            }
+        });
+    }
+
+    private class BufferSubscriber<T> extends Subscriber<Notification<T>> {
+
+        final Subscriber<? super Notification<T>> child;
+        final ArrayDeque<Notification<T>> queue = new ArrayDeque<>();
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        boolean failed; // guarded by queue
+        Throwable error; // written under queue before done
+        volatile boolean done;
+
+        BufferSubscriber(Subscriber<? super Notification<T>> child) {
+            this.child = child;
+        }
+
+        @Override
+        public void onNext(Notification<T> notification) {
+            synchronized (queue) {
+                if (failed)
+                    return;
+                if (queue.size() < capacity || notification.isOnError())
+                    queue.offer(notification);
+                else {
+                    switch (overflow) {
+                        case DROP_OLDEST:
+                            queue.poll();
+                            queue.offer(notification);
+                            break;
+                        case CONFLATE:
+                            queue.pollLast();
+                            queue.offer(notification);
+                            break;
+                        case ERROR:
+                            failed = true;
+                            error = new MissingBackpressureException("The buffer of " + capacity + " values is full");
+                            done = true;
+                            unsubscribe();
+                            break;
+                    }
+                    dropped.incrementAndGet();
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (queue) {
+                if (failed)
+                    return;
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (queue) {
+                if (failed)
+                    return;
+                done = true;
+            }
+            drain();
+        }
+
+        void requestMore(long n) {
+            if (n <= 0)
+                return;
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n;
+                if (next < 0)
+                    next = Long.MAX_VALUE;
+            }
+            while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            do {
+                long r = requested.get();
+                long emitted = 0;
+                while (emitted != r) {
+                    if (child.isUnsubscribed())
+                        return;
+                    Notification<T> notification;
+                    synchronized (queue) {
+                        notification = queue.poll();
+                    }
+                    if (notification == null)
+                        break;
+                    child.onNext(notification);
+                    emitted++;
+                }
+                if (done && isEmpty()) {
+                    terminate();
+                    return;
+                }
+                if (emitted != 0 && r != Long.MAX_VALUE)
+                    requested.addAndGet(-emitted);
+            }
+            while (wip.decrementAndGet() != 0);
+        }
+
+        private boolean isEmpty() {
+            synchronized (queue) {
+                return queue.isEmpty();
+            }
+        }
+
+        private void terminate() {
+            if (error != null)
+                child.onError(error);
+            else
+                child.onCompleted();
+            unsubscribe();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package satellite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Notification;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import valuemap.Codec;
+
+/**
+ * {@link ChannelStore} keeps notifications of channels in files, so a channel result that has arrived
+ * before a process death can be delivered after the process restart without relaunching the observable.
+ * See {@link DeliveryMethod#persistent(DeliveryMethod, ChannelStore)}.
+ *
+ * Each channel has an append-only file which is a sequence of records: a one-byte kind, a four-byte length
+ * and a value marshalled with a {@link Codec}. Values are marshalled on the thread that emits them, before they
+ * are delivered to subscribers, so a subscriber that changes a delivered value does not race with marshalling.
+ * Only the marshalled records are queued, and they are written in batches on a given scheduler,
+ * so the thread that emits notifications never waits for the disk. A batch opens each file once and is written
+ * at least every {@link #FLUSH_BYTES} bytes, so a continuous stream of notifications gets persisted as well.
+ *
+ * Restoring is the only blocking operation. It reads the file of a channel of the previous process instance
+ * when the channel is subscribed to for the first time, because the subscribing thread has to decide whether
+ * the observable should be launched. This happens once per channel after a process restart, and files are
+ * small because only the notifications the delivery method delivers to new subscribers are kept.
+ */
+public class ChannelStore {
+
+    static final int FLUSH_BYTES = 64 * 1024;
+
+    private static final byte ON_NEXT = 0;
+    private static final byte ON_ERROR = 1;
+    private static final byte ON_COMPLETED = 2;
+
+    private final File directory;
+    private final Codec codec;
+    private final Scheduler.Worker worker;
+
+    private final ConcurrentLinkedQueue<Operation> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final HashSet<RestartableId> touched = new HashSet<>(); // keys of the previous process, guarded by itself
+
+    // accessed by drain() only, keys of running channels
+    private final HashSet<RestartableId> failed = new HashSet<>();
+    private final HashMap<RestartableId, Tail> tails = new HashMap<>();
+
+    private final Action0 drain = new Action0() {
+        @Override
+        public void call() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates a store which keeps files in a given directory, uses {@link Codec#BINARY} and writes
+     * on {@link Schedulers#io()}.
+     *
+     * @param directory a directory for the store files, for example {@code new File(context.getFilesDir(), "channels")}.
+     */
+    public ChannelStore(File directory) {
+        this(directory, Codec.BINARY, Schedulers.io());
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param directory a directory for the store files.
+     * @param codec     a codec for onNext values and onError throwables.
+     * @param scheduler a scheduler for file writes.
+     */
+    public ChannelStore(File directory, Codec codec, Scheduler scheduler) {
+        this.directory = directory;
+        this.codec = codec;
+        this.worker = scheduler.createWorker();
+    }
+
+    /**
+     * Schedules deletion of all files of the store, for example on a cold start when there is no saved state
+     * that can refer to them.
+     */
+    public void clear() {
+        enqueue(new Operation(null, ON_COMPLETED, null, 0));
+    }
+
+    /**
+     * Returns notifications of a channel which has been persisted by a previous process instance and which
+     * observable has terminated, or null. A channel can be restored only once and only until
+     * it has been written or deleted by the current process.
+     *
+     * An incomplete channel is not restored because its observable will be relaunched, its file gets deleted.
+     *
+     * @param limit a maximum number of the latest onNext and onError notifications to return.
+     */
+    <T> List<Notification<T>> restore(RestartableId key, int limit) {
+        if (key.isCurrentProcess() || !touch(key))
+            return null;
+
+        File file = file(key);
+        if (!file.exists())
+            return null;
+
+        ArrayDeque<Notification<T>> notifications = new ArrayDeque<>();
+        boolean completed = false;
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                while (!completed) {
+                    byte kind = in.readByte();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    if (kind == ON_NEXT)
+                        notifications.add(Notification.createOnNext(codec.<T>unmarshall(bytes)));
+                    else {
+                        if (kind == ON_ERROR)
+                            notifications.add(Notification.<T>createOnError(codec.<Throwable>unmarshall(bytes)));
+                        completed = true;
+                    }
+                    if (notifications.size() > limit)
+                        notifications.poll();
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (EOFException ignored) {
+            // the observable has not terminated or the last record has not been written completely
+        }
+        catch (IOException | RuntimeException ignored) {
+            completed = false;
+        }
+
+        if (!completed) {
+            enqueue(new Operation(key, ON_COMPLETED, null, 0));
+            return null;
+        }
+        return new ArrayList<>(notifications);
+    }
+
+    /**
+     * Marshals a notification and queues it to be written.
+     *
+     * An onError notification which throwable can not be marshalled deletes the channel file instead,
+     * so the observable gets relaunched after a process restart.
+     *
+     * @param limit a maximum number of the latest onNext and onError notifications to keep, 1 means that each
+     *              onNext or onError notification replaces all previously written ones,
+     *              {@link Integer#MAX_VALUE} keeps all notifications.
+     * @throws IllegalArgumentException if the value of an onNext notification can not be marshalled.
+     */
+    void write(RestartableId key, Notification<?> notification, int limit) {
+        if (!key.isCurrentProcess())
+            touch(key);
+
+        byte kind = notification.isOnNext() ? ON_NEXT : notification.isOnError() ? ON_ERROR : ON_COMPLETED;
+        byte[] bytes;
+        try {
+            bytes = kind == ON_NEXT ? codec.marshall(notification.getValue()) :
+                kind == ON_ERROR ? codec.marshall(notification.getThrowable()) :
+                    new byte[0];
+        }
+        catch (RuntimeException e) {
+            if (kind == ON_NEXT)
+                throw new IllegalArgumentException("Can not persist a value of channel " + key, e);
+            enqueue(new Operation(key, kind, null, 0));
+            return;
+        }
+        enqueue(new Operation(key, kind, record(kind, bytes), limit));
+    }
+
+    /**
+     * Queues deletion of a channel file.
+     */
+    void delete(RestartableId key) {
+        if (!key.isCurrentProcess())
+            touch(key);
+        enqueue(new Operation(key, ON_COMPLETED, null, 0));
+    }
+
+    private boolean touch(RestartableId key) {
+        synchronized (touched) {
+            return touched.add(key);
+        }
+    }
+
+    private void enqueue(Operation operation) {
+        queue.offer(operation);
+        if (wip.getAndIncrement() == 0)
+            worker.schedule(drain);
+    }
+
+    private void drain() {
+        LinkedHashMap<RestartableId, Batch> batches = new LinkedHashMap<>();
+        int pending = 0;
+        do {
+            Operation operation = queue.poll();
+            if (operation.key == null) {
+                batches.clear();
+                failed.clear();
+                tails.clear();
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files)
+                        file.delete();
+                }
+            }
+            else if (operation.record == null) {
+                batches.remove(operation.key);
+                failed.remove(operation.key);
+                tails.remove(operation.key);
+                file(operation.key).delete();
+            }
+            else if (failed.contains(operation.key)) {
+                if (operation.kind != ON_NEXT)
+                    failed.remove(operation.key); // the observable has terminated, there will be no more writes
+            }
+            else {
+                pending += append(batches, operation);
+                if (pending >= FLUSH_BYTES) {
+                    flush(batches);
+                    pending = 0;
+                }
+            }
+        }
+        while (wip.decrementAndGet() != 0);
+
+        flush(batches);
+    }
+
+    /**
+     * Adds a record of a notification to a channel's batch.
+     *
+     * @return the number of bytes added.
+     */
+    private int append(Map<RestartableId, Batch> batches, Operation operation) {
+        RestartableId key = operation.key;
+        byte kind = operation.kind;
+        byte[] record = operation.record;
+
+        Batch batch = batches.get(key);
+        if (batch == null) {
+            batch = new Batch();
+            batches.put(key, batch);
+        }
+
+        if (operation.limit == 1 && kind != ON_COMPLETED) {
+            batch.reset();
+            batch.write(record);
+        }
+        else if (operation.limit == Integer.MAX_VALUE)
+            batch.write(record);
+        else
+            appendBounded(batch, key, kind, record, operation.limit);
+
+        if (kind != ON_NEXT) {
+            // the observable has terminated, there will be no more writes
+            batch.terminated = true;
+            tails.remove(key);
+        }
+        return record.length;
+    }
+
+    private void appendBounded(Batch batch, RestartableId key, byte kind, byte[] record, int limit) {
+        Tail tail = tails.get(key);
+        if (tail == null) {
+            tail = new Tail();
+            tails.put(key, tail);
+        }
+        if (kind != ON_COMPLETED) {
+            tail.records.add(record);
+            if (tail.records.size() > limit)
+                tail.records.poll();
+        }
+
+        if (++tail.count > 2L * limit) {
+            // the file has passed the limit, it gets rewritten with the kept records only
+            batch.reset();
+            for (byte[] kept : tail.records)
+                batch.write(kept);
+            tail.count = tail.records.size();
+            if (kind == ON_COMPLETED)
+                batch.write(record);
+        }
+        else
+            batch.write(record);
+    }
+
+    private void flush(Map<RestartableId, Batch> batches) {
+        for (Map.Entry<RestartableId, Batch> entry : batches.entrySet()) {
+            File file = file(entry.getKey());
+            try {
+                directory.mkdirs();
+                FileOutputStream out = new FileOutputStream(file, !entry.getValue().truncate);
+                try {
+                    entry.getValue().buffer.writeTo(out);
+                }
+                finally {
+                    out.close();
+                }
+            }
+            catch (IOException e) {
+                if (!entry.getValue().terminated)
+                    failed.add(entry.getKey());
+                tails.remove(entry.getKey());
+                file.delete();
+            }
+        }
+        batches.clear();
+    }
+
+    private static byte[] record(byte kind, byte[] bytes) {
+        byte[] record = new byte[5 + bytes.length];
+        record[0] = kind;
+        record[1] = (byte)(bytes.length >>> 24);
+        record[2] = (byte)(bytes.length >>> 16);
+        record[3] = (byte)(bytes.length >>> 8);
+        record[4] = (byte)bytes.length;
+        System.arraycopy(bytes, 0, record, 5, bytes.length);
+        return record;
+    }
+
+    private File file(RestartableId key) {
+        return new File(directory, Long.toHexString(key.nonce) + "-" + Long.toHexString(key.sequence));
+    }
+
+    private static class Operation {
+
+        final RestartableId key; // null clears the store
+        final byte kind;
+        final byte[] record; // null deletes the channel file
+        final int limit;
+
+        Operation(RestartableId key, byte kind, byte[] record, int limit) {
+            this.key = key;
+            this.kind = kind;
+            this.record = record;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Records of a channel which are written to its file together.
+     */
+    private static class Batch {
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        boolean truncate; // the file gets rewritten instead of appended
+        boolean terminated; // the batch contains the last record of the channel
+
+        void write(byte[] record) {
+            buffer.write(record, 0, record.length);
+        }
+
+        void reset() {
+            buffer.reset();
+            truncate = true;
+        }
+    }
+
+    /**
+     * The latest records of a running channel with a bounded number of notifications.
+     */
+    private static class Tail {
+
+        final ArrayDeque<byte[]> records = new ArrayDeque<>();
+        int count; // the number of records in the file and in the current batch
+    }
+}
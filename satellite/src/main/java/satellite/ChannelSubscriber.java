@@ -0,0 +1,117 @@
+package satellite;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Notification;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Subscribes a channel's subject to the channel's observable. The subscriber materializes notifications,
+ * reports them to the delivery method on the observable's thread before they can reach any subscriber, detaches the channel from the observable when it terminates and
+ * emits onNext and onError notifications into the subject. Doing this in one subscriber instead of
+ * a chain of operators saves an operator stage per step for each value.
+ *
+ * If a delivery scheduler is given, notifications are queued and moved to the scheduler by a single drain loop,
+ * so a burst of notifications costs one scheduled action. Unlike {@link rx.Observable#observeOn(Scheduler)}
+ * there is no backpressure because a channel consumes its observable without backpressure anyway.
+ */
+class ChannelSubscriber<T> extends Subscriber<T> implements Action0 {
+
+    private final RestartableId key;
+    private final Subject<Notification<T>, Notification<T>> subject;
+    private final DeliveryMethod method;
+    private final Scheduler.Worker worker;
+
+    private final ConcurrentLinkedQueue<Notification<T>> queue;
+    private final AtomicInteger wip;
+
+    ChannelSubscriber(RestartableId key, Subject<Notification<T>, Notification<T>> subject, DeliveryMethod method, Scheduler scheduler) {
+        this.key = key;
+        this.subject = subject;
+        this.method = method;
+        if (scheduler == null) {
+            worker = null;
+            queue = null;
+            wip = null;
+        }
+        else {
+            worker = scheduler.createWorker();
+            queue = new ConcurrentLinkedQueue<>();
+            wip = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Returns a subscription which stops the channel. The worker is not a part of the subscriber itself
+     * because the subscriber gets unsubscribed when the observable terminates, before the terminal
+     * notification has been delivered.
+     */
+    Subscription channelSubscription() {
+        return worker == null ? this : Subscriptions.from(this, worker);
+    }
+
+    @Override
+    public void onNext(T value) {
+        Notification<T> notification = Notification.createOnNext(value);
+        try {
+            method.onNotification(key, notification);
+        }
+        catch (RuntimeException e) {
+            // the delivery method can not keep the value, the channel fails instead of losing it silently
+            unsubscribe();
+            onError(e);
+            return;
+        }
+        emit(notification);
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        Notification<T> notification = Notification.createOnError(e);
+        method.onNotification(key, notification);
+        emit(notification);
+    }
+
+    @Override
+    public void onCompleted() {
+        Notification<T> notification = Notification.createOnCompleted();
+        method.onNotification(key, notification);
+        emit(notification);
+    }
+
+    private void emit(Notification<T> notification) {
+        if (worker == null)
+            deliver(notification);
+        else {
+            queue.offer(notification);
+            if (wip.getAndIncrement() == 0)
+                worker.schedule(this);
+        }
+    }
+
+    @Override
+    public void call() {
+        do {
+            Notification<T> notification;
+            while ((notification = queue.poll()) != null) {
+                if (worker.isUnsubscribed())
+                    return;
+                deliver(notification);
+            }
+        }
+        while (wip.decrementAndGet() != 0);
+    }
+
+    private void deliver(Notification<T> notification) {
+        if (notification.isOnCompleted() || notification.isOnError())
+            ReconnectableMap.INSTANCE.removeSubscription(key, subject);
+        if (!notification.isOnCompleted())
+            subject.onNext(notification);
+    }
+}
@@ -0,0 +1,313 @@
+package satellite;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Subscription;
+import rx.subjects.Subject;
+
+/**
+ * An open addressing hash table that maps {@link RestartableId} to a channel: a subject, a subscription
+ * to the subject's source, a delivery method, a number of the subject's subscribers and a weak reference
+ * to the channel owner.
+ *
+ * Keys and values are kept in parallel arrays, so the table does not allocate entries and
+ * a lookup compares two longs without touching key objects. Removal uses backward shift deletion,
+ * so there are no tombstones.
+ *
+ * A channel is idle when it has no subscribers. The number of idle channels is added to a counter
+ * which can be shared between tables.
+ *
+ * The table is not thread-safe.
+ */
+class ChannelTable {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final AtomicInteger idleCounter;
+
+    private long[] nonces = new long[INITIAL_CAPACITY];
+    private long[] sequences = new long[INITIAL_CAPACITY];
+    private Subject[] subjects = new Subject[INITIAL_CAPACITY];
+    private Subscription[] subscriptions = new Subscription[INITIAL_CAPACITY];
+    private int[] subscribers = new int[INITIAL_CAPACITY];
+    private long[] idleSince = new long[INITIAL_CAPACITY];
+    private WeakReference[] owners = new WeakReference[INITIAL_CAPACITY];
+    private DeliveryMethod[] methods = new DeliveryMethod[INITIAL_CAPACITY];
+    private int size;
+    private volatile int idle; // written under the table's lock
+
+    ChannelTable(AtomicInteger idleCounter) {
+        this.idleCounter = idleCounter;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of idle channels. It can be read without holding the table's lock as a hint.
+     */
+    int idle() {
+        return idle;
+    }
+
+    Subject subject(RestartableId key) {
+        int index = indexOf(key.nonce, key.sequence);
+        return index < 0 ? null : subjects[index];
+    }
+
+    /**
+     * Adds a new channel with one subscriber and without a subscription. The key must not be in the table.
+     *
+     * @param owner an owner of the channel or null.
+     */
+    void put(RestartableId key, Subject subject, DeliveryMethod method, Object owner) {
+        if ((size + 1) * 2 > subjects.length)
+            resize(subjects.length * 2);
+        int index = insert(key.nonce, key.sequence, subject, null);
+        subscribers[index] = 1;
+        owners[index] = owner == null ? null : new WeakReference<>(owner);
+        methods[index] = method;
+        size++;
+    }
+
+    /**
+     * Adds a subscriber to a channel if the channel's subject is the given one.
+     *
+     * @param owner a new owner of the channel or null to keep the current one.
+     */
+    void acquire(RestartableId key, Subject subject, Object owner) {
+        int index = indexOf(key.nonce, key.sequence);
+        if (index < 0 || subjects[index] != subject)
+            return;
+        if (subscribers[index]++ == 0) {
+            idle--;
+            idleCounter.decrementAndGet();
+        }
+        if (owner != null && (owners[index] == null || owners[index].get() != owner))
+            owners[index] = new WeakReference<>(owner);
+    }
+
+    /**
+     * Removes a subscriber from a channel if the channel's subject is the given one.
+     *
+     * @param now the current time in nanoseconds.
+     */
+    void release(RestartableId key, Subject subject, long now) {
+        int index = indexOf(key.nonce, key.sequence);
+        if (index < 0 || subjects[index] != subject)
+            return;
+        if (--subscribers[index] == 0) {
+            idleSince[index] = now;
+            idle++;
+            idleCounter.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sets a subscription of a channel if the channel's subject is the given one.
+     *
+     * @return true if the subscription has been set.
+     */
+    boolean setSubscription(RestartableId key, Subject subject, Subscription subscription) {
+        int index = indexOf(key.nonce, key.sequence);
+        if (index < 0 || subjects[index] != subject)
+            return false;
+        subscriptions[index] = subscription;
+        return true;
+    }
+
+    /**
+     * Clears the subscription of a channel if the channel's subject is the given one.
+     *
+     * @return the subscription or null.
+     */
+    Subscription detach(RestartableId key, Subject subject) {
+        int index = indexOf(key.nonce, key.sequence);
+        if (index < 0 || subjects[index] != subject)
+            return null;
+        Subscription subscription = subscriptions[index];
+        subscriptions[index] = null;
+        return subscription;
+    }
+
+    /**
+     * Removes a channel. {@link DeliveryMethod#onDismiss(RestartableId)} of the channel is called
+     * when a channel is removed by any of the table methods.
+     *
+     * @return the subscription of the removed channel or null.
+     */
+    Subscription remove(RestartableId key) {
+        int index = indexOf(key.nonce, key.sequence);
+        return index < 0 ? null : removeAt(index);
+    }
+
+    /**
+     * Returns true if a channel has a subscription to its source.
+     */
+    boolean subscribed(RestartableId key) {
+        int index = indexOf(key.nonce, key.sequence);
+        return index >= 0 && subscriptions[index] != null;
+    }
+
+    /**
+     * Adds keys of channels which have a subscription to a given collection.
+     */
+    void subscribedKeys(Collection<RestartableId> keys) {
+        for (int i = 0; i < subjects.length; i++) {
+            if (subscriptions[i] != null)
+                keys.add(new RestartableId(nonces[i], sequences[i]));
+        }
+    }
+
+    /**
+     * Removes idle channels which sources have terminated and which have been idle longer than idleTtl,
+     * or which owners have been garbage collected and which have been idle longer than orphanTtl.
+     * Channels with a running source are never removed, so nothing has to be unsubscribed.
+     *
+     * @param idleEvictions   receives the number of channels that have been removed because of idleTtl.
+     * @param orphanEvictions receives the number of channels that have been removed because of orphanTtl.
+     */
+    void sweep(long now, long idleTtl, long orphanTtl, AtomicLong idleEvictions, AtomicLong orphanEvictions) {
+        int i = 0;
+        while (idle > 0 && i < subjects.length) {
+            if (subjects[i] != null && subscribers[i] == 0 && subscriptions[i] == null) {
+                long idle = now - idleSince[i];
+                int reason = idle > idleTtl ? 0 :
+                    idle > orphanTtl && owners[i] != null && owners[i].get() == null ? 1 : -1;
+                if (reason >= 0) {
+                    (reason == 0 ? idleEvictions : orphanEvictions).incrementAndGet();
+                    removeAt(i);
+                    continue; // an entry may have been shifted into this slot
+                }
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Returns the time since the oldest idle channel is idle, or {@link Long#MAX_VALUE} if there are no idle channels.
+     */
+    long oldestIdleSince() {
+        int index = oldestIdle();
+        return index < 0 ? Long.MAX_VALUE : idleSince[index];
+    }
+
+    /**
+     * Removes the oldest idle channel.
+     *
+     * @return the subscription of the removed channel or null.
+     */
+    Subscription removeOldestIdle() {
+        int index = oldestIdle();
+        return index < 0 ? null : removeAt(index);
+    }
+
+    private int oldestIdle() {
+        int oldest = -1;
+        for (int i = 0; i < subjects.length; i++) {
+            if (subjects[i] != null && subscribers[i] == 0 && (oldest < 0 || idleSince[i] - idleSince[oldest] < 0))
+                oldest = i;
+        }
+        return oldest;
+    }
+
+    private Subscription removeAt(int index) {
+        Subscription subscription = subscriptions[index];
+        if (subscribers[index] == 0) {
+            idle--;
+            idleCounter.decrementAndGet();
+        }
+        methods[index].onDismiss(new RestartableId(nonces[index], sequences[index]));
+        delete(index);
+        size--;
+        return subscription;
+    }
+
+    private int indexOf(long nonce, long sequence) {
+        int mask = subjects.length - 1;
+        for (int i = slot(nonce, sequence, mask); subjects[i] != null; i = (i + 1) & mask) {
+            if (sequences[i] == sequence && nonces[i] == nonce)
+                return i;
+        }
+        return -1;
+    }
+
+    private int insert(long nonce, long sequence, Subject subject, Subscription subscription) {
+        int mask = subjects.length - 1;
+        int i = slot(nonce, sequence, mask);
+        while (subjects[i] != null)
+            i = (i + 1) & mask;
+        nonces[i] = nonce;
+        sequences[i] = sequence;
+        subjects[i] = subject;
+        subscriptions[i] = subscription;
+        return i;
+    }
+
+    private void delete(int index) {
+        int mask = subjects.length - 1;
+        int hole = index;
+        for (int i = (index + 1) & mask; subjects[i] != null; i = (i + 1) & mask) {
+            int slot = slot(nonces[i], sequences[i], mask);
+            // the entry can fill the hole if its slot is not cyclically within (hole, i]
+            if (hole <= i ? (slot <= hole || slot > i) : (slot <= hole && slot > i)) {
+                move(i, hole);
+                hole = i;
+            }
+        }
+        subjects[hole] = null;
+        subscriptions[hole] = null;
+        owners[hole] = null;
+        methods[hole] = null;
+    }
+
+    private void move(int from, int to) {
+        nonces[to] = nonces[from];
+        sequences[to] = sequences[from];
+        subjects[to] = subjects[from];
+        subscriptions[to] = subscriptions[from];
+        subscribers[to] = subscribers[from];
+        idleSince[to] = idleSince[from];
+        owners[to] = owners[from];
+        methods[to] = methods[from];
+    }
+
+    private void resize(int capacity) {
+        long[] oldNonces = nonces;
+        long[] oldSequences = sequences;
+        Subject[] oldSubjects = subjects;
+        Subscription[] oldSubscriptions = subscriptions;
+        int[] oldSubscribers = subscribers;
+        long[] oldIdleSince = idleSince;
+        WeakReference[] oldOwners = owners;
+        DeliveryMethod[] oldMethods = methods;
+
+        nonces = new long[capacity];
+        sequences = new long[capacity];
+        subjects = new Subject[capacity];
+        subscriptions = new Subscription[capacity];
+        subscribers = new int[capacity];
+        idleSince = new long[capacity];
+        owners = new WeakReference[capacity];
+        methods = new DeliveryMethod[capacity];
+
+        for (int i = 0; i < oldSubjects.length; i++) {
+            if (oldSubjects[i] != null) {
+                int index = insert(oldNonces[i], oldSequences[i], oldSubjects[i], oldSubscriptions[i]);
+                subscribers[index] = oldSubscribers[i];
+                idleSince[index] = oldIdleSince[i];
+                owners[index] = oldOwners[i];
+                methods[index] = oldMethods[i];
+            }
+        }
+    }
+
+    private static int slot(long nonce, long sequence, int mask) {
+        // low bits of the hash select a ReconnectableMap segment
+        return (RestartableId.hash(nonce, sequence) >>> 4) & mask;
+    }
+}
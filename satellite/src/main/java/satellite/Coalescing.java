@@ -0,0 +1,253 @@
+package satellite;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.observables.ConnectableObservable;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * {@link Coalescing} wraps observable factories so that concurrent launches of the same factory with equal
+ * arguments share a single subscription to the observable, even if they belong to different
+ * {@link Restartable}s or {@link RestartableSet}s.
+ *
+ * A shared observable replays a limited number of its latest values to subscribers that join later, the latest value
+ * by default. It is unsubscribed when its last subscriber unsubscribes, for example when the last of the restartables
+ * is dismissed, and it is forgotten when it terminates, so the next launch after a completion creates a new observable.
+ *
+ * Factories are compared with {@link Object#equals(Object)}, so the same factory instance should be used
+ * by all launchers or the factory should implement equals. Arguments are compared with equals as well,
+ * arrays are compared by their content. Arguments should not be changed while the observable is running.
+ *
+ * A factory is called outside of any shared lock, only launches with an equal key wait for it.
+ */
+public class Coalescing {
+
+    private static final ConcurrentHashMap<Key, Shared> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * Returns an observable factory that shares observables of a given factory between concurrent launches
+     * with equal arguments. The latest value is replayed to subscribers that join later.
+     *
+     * @param factory an observable factory.
+     * @return a coalescing observable factory.
+     */
+    public static <A, T> ObservableFactory<A, T> coalesce(ObservableFactory<A, T> factory) {
+        return coalesce(factory, 1);
+    }
+
+    /**
+     * Returns an observable factory that shares observables of a given factory between concurrent launches
+     * with equal arguments.
+     *
+     * @param factory    an observable factory.
+     * @param replaySize a maximum number of the latest values to replay to subscribers that join later.
+     * @return a coalescing observable factory.
+     */
+    public static <A, T> ObservableFactory<A, T> coalesce(final ObservableFactory<A, T> factory, final int replaySize) {
+        checkReplaySize(replaySize);
+        return new ObservableFactory<A, T>() {
+            @Override
+            public Observable<T> call(final A arg) {
+                return shared(new Key(factory, arg, replaySize), new Source<T>() {
+                    @Override
+                    public Observable<T> create() {
+                        return factory.call(arg);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Returns an observable factory that shares observables of a given factory between concurrent launches.
+     * The latest value is replayed to subscribers that join later.
+     *
+     * @param factory an observable factory.
+     * @return a coalescing observable factory.
+     */
+    public static <T> ObservableFactoryNoArg<T> coalesce(ObservableFactoryNoArg<T> factory) {
+        return coalesce(factory, 1);
+    }
+
+    /**
+     * Returns an observable factory that shares observables of a given factory between concurrent launches.
+     *
+     * @param factory    an observable factory.
+     * @param replaySize a maximum number of the latest values to replay to subscribers that join later.
+     * @return a coalescing observable factory.
+     */
+    public static <T> ObservableFactoryNoArg<T> coalesce(final ObservableFactoryNoArg<T> factory, final int replaySize) {
+        checkReplaySize(replaySize);
+        return new ObservableFactoryNoArg<T>() {
+            @Override
+            public Observable<T> call() {
+                return shared(new Key(factory, null, replaySize), new Source<T>() {
+                    @Override
+                    public Observable<T> create() {
+                        return factory.call();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Returns the number of shared observables which are currently running.
+     */
+    static int size() {
+        return SHARED.size();
+    }
+
+    private static void checkReplaySize(int replaySize) {
+        if (replaySize <= 0)
+            throw new IllegalArgumentException("replaySize > 0 required but it was " + replaySize);
+    }
+
+    private static <T> Observable<T> shared(final Key key, final Source<T> source) {
+        return Observable.create(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(Subscriber<? super T> subscriber) {
+                while (true) {
+                    Shared<T> shared = SHARED.get(key);
+                    if (shared == null) {
+                        Shared<T> created = new Shared<>(key, source);
+                        shared = SHARED.putIfAbsent(key, created);
+                        if (shared == null)
+                            shared = created;
+                    }
+                    if (shared.subscribe(subscriber))
+                        return;
+                    SHARED.remove(key, shared);
+                }
+            }
+        });
+    }
+
+    private interface Source<T> {
+        Observable<T> create();
+    }
+
+    /**
+     * A lazy holder of a shared observable. The observable is created and connected by its first subscriber,
+     * its connection is unsubscribed when the number of subscribers drops to zero.
+     */
+    private static class Shared<T> {
+
+        final Key key;
+        final Source<T> source;
+
+        private ConnectableObservable<T> observable; // guarded by this
+        private Subscription connection; // guarded by this
+        private int subscribers; // guarded by this
+        private boolean finished; // guarded by this
+
+        Shared(Key key, Source<T> source) {
+            this.key = key;
+            this.source = source;
+        }
+
+        /**
+         * Subscribes to the shared observable, or returns false if it has already finished.
+         */
+        boolean subscribe(Subscriber<? super T> subscriber) {
+            ConnectableObservable<T> observable;
+            boolean connect;
+            synchronized (this) {
+                if (finished)
+                    return false;
+                connect = this.observable == null;
+                if (connect) {
+                    this.observable = source.create()
+                        .doOnTerminate(new Action0() {
+                            @Override
+                            public void call() {
+                                finish();
+                            }
+                        })
+                        .replay(key.replaySize);
+                }
+                observable = this.observable;
+                subscribers++;
+            }
+
+            subscriber.add(Subscriptions.create(new Action0() {
+                @Override
+                public void call() {
+                    release();
+                }
+            }));
+            observable.unsafeSubscribe(subscriber);
+
+            if (connect) {
+                observable.connect(new Action1<Subscription>() {
+                    @Override
+                    public void call(Subscription subscription) {
+                        boolean released;
+                        synchronized (Shared.this) {
+                            released = subscribers == 0;
+                            if (!released)
+                                connection = subscription;
+                        }
+                        if (released)
+                            subscription.unsubscribe();
+                    }
+                });
+            }
+            return true;
+        }
+
+        private void release() {
+            Subscription connection;
+            synchronized (this) {
+                if (--subscribers > 0)
+                    return;
+                finished = true;
+                connection = this.connection;
+                this.connection = null;
+            }
+            SHARED.remove(key, this);
+            if (connection != null)
+                connection.unsubscribe();
+        }
+
+        private void finish() {
+            synchronized (this) {
+                finished = true;
+            }
+            SHARED.remove(key, this);
+        }
+    }
+
+    private static class Key {
+
+        final Object factory;
+        final Object arg;
+        final int replaySize;
+
+        Key(Object factory, Object arg, int replaySize) {
+            this.factory = factory;
+            this.arg = arg;
+            this.replaySize = replaySize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key that = (Key)o;
+            return factory.equals(that.factory) && replaySize == that.replaySize &&
+                Arrays.deepEquals(new Object[]{arg}, new Object[]{that.arg});
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * factory.hashCode() + replaySize) + Arrays.deepHashCode(new Object[]{arg});
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package satellite;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+
+/**
+ * Works like {@link DeliveryMethod#LATEST} but each subscriber receives at most one onNext notification
+ * per interval. Notifications that arrive in between replace each other, so only the newest one is delivered.
+ * All notifications are delivered on a given scheduler, onError notifications are delivered without a delay.
+ *
+ * Instances can be created with {@link DeliveryMethod#latest(Scheduler)} and
+ * {@link DeliveryMethod#latest(long, TimeUnit, Scheduler)}.
+ */
+class ConflatingDeliveryMethod extends DeliveryMethod {
+
+    private final long intervalMillis;
+    private final Scheduler scheduler;
+
+    ConflatingDeliveryMethod(long interval, TimeUnit unit, Scheduler scheduler) {
+        super("LATEST(" + interval + " " + unit + ")");
+        if (interval < 0)
+            throw new IllegalArgumentException("interval >= 0 required but it was " + interval);
+        if (scheduler == null)
+            throw new NullPointerException("scheduler");
+        this.intervalMillis = unit.toMillis(interval);
+        if (interval > 0 && intervalMillis == 0) // the scheduler clock has millisecond precision
+            throw new IllegalArgumentException("interval of at least 1 millisecond required but it was " + interval + " " + unit);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    <T> Observable<Notification<T>> deliver(Observable<Notification<T>> channel) {
+        return channel.lift(new Observable.Operator<Notification<T>, Notification<T>>() {
+            @Override
+            public Subscriber<? super Notification<T>> call(Subscriber<? super Notification<T>> child) {
+                Scheduler.Worker worker = scheduler.createWorker();
+                ConflatingSubscriber<T> parent = new ConflatingSubscriber<>(child, worker);
+                child.add(worker);
+                child.add(parent);
+                return parent;
+            }
+        });
+    }
+
+    private class ConflatingSubscriber<T> extends Subscriber<Notification<T>> implements Action0 {
+
+        final Subscriber<? super Notification<T>> child;
+        final Scheduler.Worker worker;
+
+        // guarded by this
+        Notification<T> value;
+        Notification<T> error;
+        boolean completed;
+        Throwable terminalError;
+        boolean scheduled;
+        long lastEmission = Long.MIN_VALUE;
+
+        ConflatingSubscriber(Subscriber<? super Notification<T>> child, Scheduler.Worker worker) {
+            this.child = child;
+            this.worker = worker;
+        }
+
+        @Override
+        public void onNext(Notification<T> notification) {
+            if (notification.isOnError()) {
+                synchronized (this) {
+                    error = notification;
+                }
+                worker.schedule(this);
+                return;
+            }
+            long delay;
+            synchronized (this) {
+                value = notification;
+                if (scheduled)
+                    return;
+                scheduled = true;
+                delay = lastEmission == Long.MIN_VALUE ? 0 : lastEmission + intervalMillis - worker.now();
+            }
+            if (delay > 0)
+                worker.schedule(this, delay, TimeUnit.MILLISECONDS);
+            else
+                worker.schedule(this);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                terminalError = e;
+            }
+            worker.schedule(this);
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                completed = true;
+            }
+            worker.schedule(this);
+        }
+
+        @Override
+        public void call() {
+            Notification<T> value;
+            Notification<T> error;
+            boolean completed;
+            Throwable terminalError;
+            synchronized (this) {
+                value = this.value;
+                error = this.error;
+                completed = this.completed;
+                terminalError = this.terminalError;
+                this.value = null;
+                this.error = null;
+                this.completed = false;
+                this.terminalError = null;
+                scheduled = false;
+                if (value != null)
+                    lastEmission = worker.now();
+            }
+            if (value != null)
+                child.onNext(value);
+            if (error != null)
+                child.onNext(error);
+            if (terminalError != null)
+                child.onError(terminalError);
+            else if (completed)
+                child.onCompleted();
+        }
+    }
+}
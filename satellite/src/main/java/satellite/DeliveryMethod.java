@@ -1,5 +1,12 @@
 package satellite;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
 import rx.subjects.BehaviorSubject;
 import rx.subjects.PublishSubject;
 import rx.subjects.ReplaySubject;
@@ -7,52 +14,282 @@ import rx.subjects.Subject;
 
 /**
  * Channel delivery methods.
+ *
+ * Besides the predefined {@link #SINGLE}, {@link #LATEST}, {@link #REPLAY} and {@link #PUBLISH} methods
+ * there are bounded variants of {@link #REPLAY} that can be created with {@link #replay(int)},
+ * {@link #replay(long, TimeUnit)} and {@link #replay(int, long, TimeUnit)}, and a bounded per-subscriber
+ * buffer which can be added to any delivery method with {@link #buffered(DeliveryMethod, int, BufferedDeliveryMethod.Overflow)}.
+ * {@link #latest(Scheduler)} and {@link #latest(long, TimeUnit, Scheduler)} are conflating variants of {@link #LATEST}.
+ *
+ * DeliveryMethod used to be an enum. The predefined methods are still singletons which can be compared with ==,
+ * but there are no values(), valueOf() or ordinal() methods and DeliveryMethod can not be used in a switch
+ * statement, EnumSet or EnumMap.
  */
-public enum DeliveryMethod {
+public class DeliveryMethod {
 
     /**
      * Only the first emitted value will be delivered.
      *
      * Observable will be immediately unsubscribed.
      */
-    SINGLE {
+    public static final DeliveryMethod SINGLE = new DeliveryMethod("SINGLE") {
         @Override
         void onNext(Restartable restartable) {
             restartable.dismiss();
         }
-    },
+    };
 
     /**
      * Keeps the latest onNext value and emits it each time a new consumer is subscribed to the Restartable's channel.
      * If a new onNext value appears whilw there is a channel subscription, the value will be delivered immediately.
      */
-    LATEST,
+    public static final DeliveryMethod LATEST = new DeliveryMethod("LATEST");
 
     /**
      * Keeps all onNext values and emits them each time a new subscriber gets subscribed to the Restartable's channel.
      * If a new onNext value appears while there is a channel subscription, the value will be delivered immediately.
+     *
+     * Note that all values are kept in memory until the channel is dismissed, use {@link #replay(int)} or
+     * {@link #replay(long, TimeUnit)} for long-running observables.
      */
-    REPLAY {
+    public static final DeliveryMethod REPLAY = new DeliveryMethod("REPLAY") {
         @Override
         <T> Subject<T, T> createSubject() {
             return ReplaySubject.create();
         }
-    },
+
+        @Override
+        int persistedSize() {
+            return Integer.MAX_VALUE;
+        }
+    };
 
     /**
      * If a new onNext value appears while there is a channel subscription, the value will be delivered immediately.
      */
-    PUBLISH {
+    public static final DeliveryMethod PUBLISH = new DeliveryMethod("PUBLISH") {
         @Override
         <T> Subject<T, T> createSubject() {
             return PublishSubject.create();
         }
     };
 
+    private final String name;
+
+    DeliveryMethod(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Works like {@link #REPLAY} but keeps only the last {@code size} notifications.
+     *
+     * @param size a maximum number of notifications to keep.
+     * @return a bounded replay delivery method.
+     */
+    public static DeliveryMethod replay(final int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size > 0 required but it was " + size);
+        return new DeliveryMethod("REPLAY(" + size + ")") {
+            @Override
+            <T> Subject<T, T> createSubject() {
+                return ReplaySubject.createWithSize(size);
+            }
+
+            @Override
+            int persistedSize() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Works like {@link #REPLAY} but keeps only notifications that have been emitted within a given time window.
+     *
+     * @param time a time window.
+     * @param unit a time unit of the time window.
+     * @return a bounded replay delivery method.
+     */
+    public static DeliveryMethod replay(final long time, final TimeUnit unit) {
+        if (time <= 0)
+            throw new IllegalArgumentException("time > 0 required but it was " + time);
+        return new DeliveryMethod("REPLAY(" + time + " " + unit + ")") {
+            @Override
+            <T> Subject<T, T> createSubject() {
+                return ReplaySubject.createWithTime(time, unit, Schedulers.immediate());
+            }
+
+            @Override
+            int persistedSize() {
+                return Integer.MAX_VALUE;
+            }
+        };
+    }
+
+    /**
+     * Works like {@link #REPLAY} but keeps only the last {@code size} notifications which have been emitted
+     * within a given time window.
+     *
+     * @param size a maximum number of notifications to keep.
+     * @param time a time window.
+     * @param unit a time unit of the time window.
+     * @return a bounded replay delivery method.
+     */
+    public static DeliveryMethod replay(final int size, final long time, final TimeUnit unit) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size > 0 required but it was " + size);
+        if (time <= 0)
+            throw new IllegalArgumentException("time > 0 required but it was " + time);
+        return new DeliveryMethod("REPLAY(" + size + ", " + time + " " + unit + ")") {
+            @Override
+            <T> Subject<T, T> createSubject() {
+                return ReplaySubject.createWithTimeAndSize(time, unit, size, Schedulers.immediate());
+            }
+
+            @Override
+            int persistedSize() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Works like {@link #LATEST} but delivers values on a given scheduler. Values that appear before
+     * the scheduler executes the delivery replace each other, so a burst of values results in a single
+     * delivery of the newest one. onError notifications are delivered without waiting for the next delivery.
+     *
+     * @param scheduler a scheduler to deliver values on, usually the main thread scheduler.
+     * @return a conflating delivery method.
+     */
+    public static DeliveryMethod latest(Scheduler scheduler) {
+        return new ConflatingDeliveryMethod(0, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    /**
+     * Works like {@link #latest(Scheduler)} but delivers at most one value per interval to each subscriber.
+     *
+     * @param interval  a minimal interval between two deliveries, 0 or at least 1 millisecond.
+     * @param unit      a time unit of the interval.
+     * @param scheduler a scheduler to deliver values on, usually the main thread scheduler.
+     * @return a conflating delivery method.
+     */
+    public static DeliveryMethod latest(long interval, TimeUnit unit, Scheduler scheduler) {
+        return new ConflatingDeliveryMethod(interval, unit, scheduler);
+    }
+
+    /**
+     * Keeps notifications of a channel in a given {@link ChannelStore}, so a result of an observable which has
+     * terminated before a process death is delivered after the process restart without relaunching the observable.
+     * Notifications are delivered with a given delivery method.
+     *
+     * Only the latest notification is kept for delivery methods which do not replay values, bounded replays
+     * keep as many notifications as they replay. Time-bounded replays without a size limit keep all notifications.
+     * onNext values must be supported by the store's codec, a value that can not be marshalled terminates the channel
+     * with an {@link IllegalArgumentException}. An onError throwable that can not be marshalled is not kept,
+     * so the observable will be relaunched after a process restart.
+     *
+     * @param method a delivery method.
+     * @param store  a store for notifications.
+     * @return a persistent delivery method.
+     */
+    public static DeliveryMethod persistent(final DeliveryMethod method, final ChannelStore store) {
+        return new DeliveryMethod(method + "+PERSISTENT") {
+            @Override
+            <T> Subject<T, T> createSubject() {
+                return method.createSubject();
+            }
+
+            @Override
+            <T> Observable<Notification<T>> deliver(Observable<Notification<T>> channel) {
+                return method.deliver(channel);
+            }
+
+            @Override
+            void onNext(Restartable restartable) {
+                method.onNext(restartable);
+            }
+
+            @Override
+            int persistedSize() {
+                return method.persistedSize();
+            }
+
+            @Override
+            <T> List<Notification<T>> restore(RestartableId key) {
+                return store.restore(key, method.persistedSize());
+            }
+
+            @Override
+            void onNotification(RestartableId key, Notification<?> notification) {
+                store.write(key, notification, method.persistedSize());
+            }
+
+            @Override
+            void onDismiss(RestartableId key) {
+                store.delete(key);
+            }
+        };
+    }
+
+    /**
+     * Adds a bounded buffer between a channel and each of its subscribers. The buffer honors subscriber requests,
+     * a given overflow strategy is used when the buffer is full.
+     *
+     * Note that the observable itself is still consumed without backpressure because a channel can have
+     * many subscribers and keeps notifications for subscribers that will connect later.
+     *
+     * @param method   a delivery method to add the buffer to.
+     * @param capacity a maximum number of buffered notifications per subscriber.
+     * @param overflow an overflow strategy.
+     * @return a buffered delivery method, see {@link BufferedDeliveryMethod#dropped()} for the number of dropped values.
+     */
+    public static BufferedDeliveryMethod buffered(DeliveryMethod method, int capacity, BufferedDeliveryMethod.Overflow overflow) {
+        return new BufferedDeliveryMethod(method, capacity, overflow);
+    }
+
     <T> Subject<T, T> createSubject() {
         return BehaviorSubject.create();
     }
 
+    <T> Observable<Notification<T>> deliver(Observable<Notification<T>> channel) {
+        return channel;
+    }
+
     void onNext(Restartable restartable) {
     }
+
+    /**
+     * Returns the maximum number of the latest onNext and onError notifications which a persistent channel keeps,
+     * see {@link #persistent(DeliveryMethod, ChannelStore)}. It matches the number of notifications the delivery
+     * method keeps for subscribers that connect later, {@link Integer#MAX_VALUE} means no limit.
+     */
+    int persistedSize() {
+        return 1;
+    }
+
+    /**
+     * Returns terminated notifications of a channel that should be delivered instead of launching the observable,
+     * or null.
+     */
+    <T> List<Notification<T>> restore(RestartableId key) {
+        return null;
+    }
+
+    /**
+     * Called for each notification of the channel's observable, including onCompleted, on the observable's thread
+     * before the notification is delivered. An exception thrown for an onNext notification terminates the channel
+     * with that exception.
+     */
+    void onNotification(RestartableId key, Notification<?> notification) {
+    }
+
+    /**
+     * Called when a channel is removed from {@link ReconnectableMap}.
+     */
+    void onDismiss(RestartableId key) {
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
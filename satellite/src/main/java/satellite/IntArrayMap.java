@@ -0,0 +1,49 @@
+package satellite;
+
+import java.util.Arrays;
+
+/**
+ * A map of int keys to objects. Keys are kept sorted in a primitive array and are found with a binary search,
+ * so there is no boxing and no entry objects. It is intended for small maps, an insertion moves the following entries.
+ *
+ * This is a plain Java replacement for android.util.SparseArray.
+ */
+final class IntArrayMap<V> {
+
+    private int[] keys = new int[0];
+    private Object[] values = new Object[0];
+    private int size;
+
+    V get(int key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        return index < 0 ? null : (V)values[index];
+    }
+
+    void put(int key, V value) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+
+        index = ~index;
+        if (size == keys.length) {
+            int capacity = size < 4 ? 4 : size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    V valueAt(int index) {
+        return (V)values[index];
+    }
+}
@@ -1,18 +1,22 @@
 package satellite;
 
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import rx.Notification;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
 import rx.Subscription;
-import rx.functions.Action1;
+import rx.functions.Action0;
 import rx.functions.Func0;
-import rx.functions.Func1;
-import rx.observers.Subscribers;
 import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
 
 /**
  * ReconnectableMap keeps track of reconnectable observables (reconnectable observable is an
@@ -20,13 +24,36 @@ import rx.subjects.Subject;
  * subject is used to (re)connect to the observable.
  *
  * Reconnectable observables are used by {@link Restartable}.
+ *
+ * The map is thread-safe. Channels are spread over a fixed number of independently locked
+ * segments, so channels with different keys can be created, completed and dismissed
+ * from different threads without contending on a single lock. Each segment is a {@link ChannelTable}.
+ *
+ * Channels without subscribers can be evicted automatically, see
+ * {@link #setEvictionPolicy(long, long, TimeUnit, int)}. Eviction is off by default.
  */
 public enum ReconnectableMap {
 
     INSTANCE;
 
-    private HashMap<String, Subject> subjects = new HashMap<>();
-    private HashMap<String, Subscription> subscriptions = new HashMap<>();
+    private static final int SEGMENTS = 16;
+
+    private final ChannelTable[] segments = new ChannelTable[SEGMENTS];
+    private final AtomicInteger idleChannels = new AtomicInteger();
+    private final AtomicInteger sweepCursor = new AtomicInteger();
+
+    private volatile long idleTtl = Long.MAX_VALUE;
+    private volatile long orphanTtl = Long.MAX_VALUE;
+    private volatile int maxIdleChannels = Integer.MAX_VALUE;
+
+    private final AtomicLong evictedIdle = new AtomicLong();
+    private final AtomicLong evictedOrphaned = new AtomicLong();
+    private final AtomicLong evictedOverflow = new AtomicLong();
+
+    {
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new ChannelTable(idleChannels);
+    }
 
     /**
      * This is the core method that connects an observable with {@link Restartable}.
@@ -39,44 +66,82 @@ public enum ReconnectableMap {
      * @return an observable that emits materialized notifications
      */
     public <T> Observable<Notification<T>> channel(
-        final String key,
+        RestartableId key,
+        DeliveryMethod method,
+        Func0<Observable<T>> observableFactory) {
+
+        return channel(key, null, method, observableFactory);
+    }
+
+    /**
+     * This variant of {@link #channel(RestartableId, DeliveryMethod, Func0)} keeps a weak reference to an owner
+     * of the channel. The channel is considered orphaned when it has no subscribers and its owner has been
+     * garbage collected. Each subscription replaces the owner, so a channel survives recreation of its owner.
+     *
+     * @param key               a unique key of the connection.
+     * @param owner             an owner of the channel, or null.
+     * @param method            a delivery method which will be used for the channel.
+     * @param observableFactory an observable factory.
+     * @param <T>               a type of observable`s onNext values
+     * @return an observable that emits materialized notifications
+     */
+    public <T> Observable<Notification<T>> channel(
+        RestartableId key,
+        Object owner,
+        DeliveryMethod method,
+        Func0<Observable<T>> observableFactory) {
+
+        return channel(key, owner, method, null, observableFactory);
+    }
+
+    /**
+     * This variant of {@link #channel(RestartableId, Object, DeliveryMethod, Func0)} delivers notifications
+     * of the observable on a given scheduler. The channel moves each notification to the scheduler once
+     * and then emits it to all of its subscribers, so subscribers do not need their own
+     * {@link Observable#observeOn(Scheduler)}.
+     *
+     * @param key               a unique key of the connection.
+     * @param owner             an owner of the channel, or null.
+     * @param method            a delivery method which will be used for the channel.
+     * @param scheduler         a scheduler to deliver notifications on, or null to deliver them on the observable's thread.
+     * @param observableFactory an observable factory.
+     * @param <T>               a type of observable`s onNext values
+     * @return an observable that emits materialized notifications
+     */
+    public <T> Observable<Notification<T>> channel(
+        final RestartableId key,
+        final Object owner,
         final DeliveryMethod method,
+        final Scheduler scheduler,
         final Func0<Observable<T>> observableFactory) {
 
         return Observable.create(new Observable.OnSubscribe<Notification<T>>() {
             @Override
             public void call(final Subscriber<? super Notification<T>> subscriber) {
-                if (subjects.containsKey(key))
-                    subjects.get(key).subscribe(subscriber);
-                else {
-                    final Subject<Notification<T>, Notification<T>> subject = method.createSubject();
-                    subjects.put(key, subject);
-                    subject.subscribe(subscriber);
-
-                    final Subscriber<Notification<T>> subjectSubscriber = Subscribers.create(new Action1<Notification<T>>() {
-                        @Override
-                        public void call(Notification<T> notification) {
-                            subject.onNext(notification);
-                        }
-                    });
-                    subscriptions.put(key, subjectSubscriber);
-
-                    observableFactory.call()
-                        .materialize()
-                        .doOnNext(new Action1<Notification<T>>() {
-                            @Override
-                            public void call(Notification<T> notification) {
-                                if (notification.isOnCompleted() || notification.isOnError())
-                                    removeSubscription(key);
-                            }
-                        })
-                        .filter(new Func1<Notification<T>, Boolean>() {
-                            @Override
-                            public Boolean call(Notification<T> notification) {
-                                return !notification.isOnCompleted();
-                            }
-                        })
-                        .subscribe(subjectSubscriber);
+                final ChannelTable segment = segment(key);
+                final Subject<Notification<T>, Notification<T>> subject;
+                final boolean created;
+
+                synchronized (segment) {
+                    Subject<Notification<T>, Notification<T>> existing = segment.subject(key);
+                    created = existing == null;
+                    if (created) {
+                        subject = method.createSubject();
+                        segment.put(key, subject, method, owner);
+                    }
+                    else {
+                        subject = existing;
+                        segment.acquire(key, subject, owner);
+                    }
+                }
+
+                // the owner must not be reachable from the subscriptions, see connect()
+                subscriber.add(release(segment, key, subject));
+                method.deliver(subject).subscribe(subscriber);
+
+                if (created) {
+                    connect(segment, key, subject, method, scheduler, observableFactory);
+                    sweep(segments[sweepCursor.getAndIncrement() & (SEGMENTS - 1)]);
                 }
             }
         });
@@ -87,23 +152,217 @@ public enum ReconnectableMap {
      *
      * @param key a unique key of the channel.
      */
-    public void dismiss(String key) {
-        removeSubscription(key);
-        subjects.remove(key);
+    public void dismiss(RestartableId key) {
+        ChannelTable segment = segment(key);
+        Subscription subscription;
+        synchronized (segment) {
+            subscription = segment.remove(key);
+        }
+        if (subscription != null)
+            subscription.unsubscribe();
     }
 
     /**
-     * Return the current list of channel keys.
+     * Returns a snapshot of keys of channels which observables are not completed yet.
+     */
+    public Set<RestartableId> keys() {
+        HashSet<RestartableId> keys = new HashSet<>();
+        for (ChannelTable segment : segments) {
+            synchronized (segment) {
+                segment.subscribedKeys(keys);
+            }
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * Returns true if a channel exists and its observable is not completed yet.
+     *
+     * @param key a unique key of the channel.
+     */
+    public boolean isRunning(RestartableId key) {
+        ChannelTable segment = segment(key);
+        synchronized (segment) {
+            return segment.subscribed(key);
+        }
+    }
+
+    /**
+     * Sets a policy of automatic eviction of channels which have no subscribers. Evicted channels are dismissed.
+     * The policy is applied from time to time when new channels are created, {@link #evict()} applies it immediately.
+     *
+     * idleTtl and orphanTtl evict only channels which observables have terminated, a running observable is never
+     * unsubscribed by them. maxIdleChannels evicts channels regardless of their observables.
+     *
+     * Orphan eviction is unsafe across Activity recreation: a {@link Restartable} owner is usually unreachable
+     * between the destruction of an Activity and its recreation, so a too short orphanTtl evicts a channel
+     * which result has not been delivered yet.
+     *
+     * By default, there are no limits.
+     *
+     * @param idleTtl         a time after which a channel without subscribers gets evicted.
+     * @param orphanTtl       a time after which an orphaned channel (see {@link #channel(RestartableId, Object, DeliveryMethod, Func0)})
+     *                        gets evicted.
+     * @param unit            a time unit of idleTtl and orphanTtl, {@link Long#MAX_VALUE} means no limit.
+     * @param maxIdleChannels a maximum number of channels without subscribers; channels that are idle
+     *                        for the longest time get evicted first.
      */
-    public Set<String> keys() {
-        return Collections.unmodifiableSet(subscriptions.keySet());
+    public void setEvictionPolicy(long idleTtl, long orphanTtl, TimeUnit unit, int maxIdleChannels) {
+        this.idleTtl = idleTtl == Long.MAX_VALUE ? Long.MAX_VALUE : unit.toNanos(idleTtl);
+        this.orphanTtl = orphanTtl == Long.MAX_VALUE ? Long.MAX_VALUE : unit.toNanos(orphanTtl);
+        this.maxIdleChannels = maxIdleChannels;
     }
 
-    private void removeSubscription(String key) {
-        Subscription subscription = subscriptions.get(key);
-        if (subscription != null) {
+    /**
+     * Evicts channels according to the current eviction policy.
+     */
+    public void evict() {
+        for (ChannelTable segment : segments)
+            sweep(segment);
+        evictOverflow();
+    }
+
+    /**
+     * Returns numbers of channels that have been evicted since the process start.
+     */
+    public EvictionStats evictionStats() {
+        return new EvictionStats(evictedIdle.get(), evictedOrphaned.get(), evictedOverflow.get());
+    }
+
+    private void sweep(ChannelTable segment) {
+        if (segment.idle() == 0)
+            return;
+        synchronized (segment) {
+            segment.sweep(System.nanoTime(), idleTtl, orphanTtl, evictedIdle, evictedOrphaned);
+        }
+    }
+
+    private void evictOverflow() {
+        while (idleChannels.get() > maxIdleChannels) {
+            ChannelTable oldest = null;
+            long oldestIdleSince = 0;
+            for (ChannelTable segment : segments) {
+                long idleSince;
+                synchronized (segment) {
+                    idleSince = segment.oldestIdleSince();
+                }
+                if (idleSince != Long.MAX_VALUE && (oldest == null || idleSince - oldestIdleSince < 0)) {
+                    oldest = segment;
+                    oldestIdleSince = idleSince;
+                }
+            }
+            if (oldest == null)
+                return;
+            Subscription subscription;
+            synchronized (oldest) {
+                subscription = oldest.removeOldestIdle();
+            }
+            evictedOverflow.incrementAndGet();
+            if (subscription != null)
+                subscription.unsubscribe();
+        }
+    }
+
+    private Subscription release(final ChannelTable segment, final RestartableId key, final Subject subject) {
+        return Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                synchronized (segment) {
+                    segment.release(key, subject, System.nanoTime());
+                }
+                if (idleChannels.get() > maxIdleChannels)
+                    evictOverflow();
+            }
+        });
+    }
+
+    /**
+     * Subscribes a subject to its source. This is a separate method because the source can run
+     * longer than the owner of the channel lives, so the subscription must not keep a reference to the owner.
+     */
+    private <T> void connect(
+        ChannelTable segment,
+        RestartableId key,
+        Subject<Notification<T>, Notification<T>> subject,
+        DeliveryMethod method,
+        Scheduler scheduler,
+        Func0<Observable<T>> observableFactory) {
+
+        List<Notification<T>> restored = method.restore(key);
+        if (restored != null) {
+            // the observable has terminated before the process restart, the channel stays completed
+            for (Notification<T> notification : restored)
+                subject.onNext(notification);
+            return;
+        }
+
+        ChannelSubscriber<T> subscriber = new ChannelSubscriber<>(key, subject, method, scheduler);
+
+        synchronized (segment) {
+            if (!segment.setSubscription(key, subject, subscriber.channelSubscription()))
+                return; // dismissed before the source has been started
+        }
+
+        observableFactory.call().subscribe(subscriber);
+    }
+
+    /**
+     * Detaches a channel from its observable after the observable has terminated.
+     */
+    void removeSubscription(RestartableId key, Subject subject) {
+        ChannelTable segment = segment(key);
+        Subscription subscription;
+        synchronized (segment) {
+            // null if the channel has been dismissed or replaced by a new one
+            subscription = segment.detach(key, subject);
+        }
+        if (subscription != null)
             subscription.unsubscribe();
-            subscriptions.remove(key);
+    }
+
+    private ChannelTable segment(RestartableId key) {
+        return segments[key.hashCode() & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Numbers of evicted channels.
+     */
+    public static class EvictionStats {
+
+        private final long idle;
+        private final long orphaned;
+        private final long overflow;
+
+        EvictionStats(long idle, long orphaned, long overflow) {
+            this.idle = idle;
+            this.orphaned = orphaned;
+            this.overflow = overflow;
+        }
+
+        /**
+         * Returns the number of channels that have been evicted because they had no subscribers for too long.
+         */
+        public long idle() {
+            return idle;
+        }
+
+        /**
+         * Returns the number of channels that have been evicted because they had been orphaned for too long.
+         */
+        public long orphaned() {
+            return orphaned;
+        }
+
+        /**
+         * Returns the number of channels that have been evicted because there were too many idle channels.
+         */
+        public long overflow() {
+            return overflow;
+        }
+
+        @Override
+        public String toString() {
+            return "EvictionStats{idle=" + idle + ", orphaned=" + orphaned + ", overflow=" + overflow + '}';
         }
     }
 }
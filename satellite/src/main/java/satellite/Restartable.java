@@ -1,7 +1,13 @@
 package satellite;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import rx.Notification;
 import rx.Observable;
+import rx.Scheduler;
 import rx.functions.Action1;
 import rx.functions.Func0;
 import rx.functions.Func1;
@@ -17,14 +23,15 @@ import valuemap.ValueMap;
  */
 public class Restartable {
 
-    private final String key;
+    private final RestartableId key;
     private final boolean restore;
     private final Object arg;
     private final ValueMap.Builder out;
+    private final Scheduler deliveryScheduler;
 
     private final PublishSubject<Object> launches = PublishSubject.create();
 
-    private static long id;
+    private ValueMap launched; // the state of the current launch, built on demand by launchIfChanged, or null
 
     /**
      * Creates a new Restartable.
@@ -32,11 +39,23 @@ public class Restartable {
      * @param out an output that will be used to reconstruct the restartable later.
      */
     public Restartable(ValueMap.Builder out) {
+        this(out, null);
+    }
+
+    /**
+     * Creates a new Restartable which delivers notifications on a given scheduler.
+     *
+     * @param out               an output that will be used to reconstruct the restartable later.
+     * @param deliveryScheduler a scheduler to deliver notifications on, or null to deliver them on the observable's thread.
+     */
+    public Restartable(ValueMap.Builder out, Scheduler deliveryScheduler) {
         this.out = out;
-        key = "id:" + ++id + " /time:" + System.nanoTime() + " /random:" + (int) (Math.random() * Long.MAX_VALUE);
+        this.deliveryScheduler = deliveryScheduler;
+        key = RestartableId.next();
         restore = false;
         arg = null;
-        out.put("key", key);
+        out.put("keyNonce", key.nonce);
+        out.put("keySequence", key.sequence);
     }
 
     /**
@@ -47,10 +66,32 @@ public class Restartable {
      * @param out an output that will be used to reconstruct the restartable later.
      */
     public Restartable(ValueMap in, ValueMap.Builder out) {
+        this(in, out, null);
+    }
+
+    /**
+     * Creates a new Restartable form a given state that has been received from the previous instance out argument.
+     * The restartable delivers notifications on a given scheduler.
+     *
+     * @param in                a value that has been constructed using the out argument of the previous Restartable`s instance.
+     * @param out               an output that will be used to reconstruct the restartable later.
+     * @param deliveryScheduler a scheduler to deliver notifications on, or null to deliver them on the observable's thread.
+     */
+    public Restartable(ValueMap in, ValueMap.Builder out, Scheduler deliveryScheduler) {
         this.out = out;
-        key = in.get("key");
+        this.deliveryScheduler = deliveryScheduler;
+        RestartableId restored = restoredKey(in);
+        if (restored != null)
+            key = restored;
+        else {
+            // a state saved by an older version or without a key, it must not share a key with other restartables
+            key = RestartableId.next();
+            out.put("keyNonce", key.nonce);
+            out.put("keySequence", key.sequence);
+        }
         restore = in.get("restore", false);
         arg = in.get("arg");
+        launched = restore ? in : null;
     }
 
     /**
@@ -67,7 +108,7 @@ public class Restartable {
         return channel(type, new Func1<Object, Observable<Notification<T>>>() {
             @Override
             public Observable<Notification<T>> call(Object ignored) {
-                return ReconnectableMap.INSTANCE.channel(key, type, observableFactoryNoArg);
+                return ReconnectableMap.INSTANCE.channel(key, Restartable.this, type, deliveryScheduler, observableFactoryNoArg);
             }
         });
     }
@@ -90,7 +131,7 @@ public class Restartable {
         return channel(type, new Func1<Object, Observable<Notification<T>>>() {
             @Override
             public Observable<Notification<T>> call(final Object arg) {
-                return ReconnectableMap.INSTANCE.channel(key, type, new Func0<Observable<T>>() {
+                return ReconnectableMap.INSTANCE.channel(key, Restartable.this, type, deliveryScheduler, new Func0<Observable<T>>() {
                     @Override
                     public Observable<T> call() {
                         return observableFactory.call((A) arg);
@@ -100,6 +141,63 @@ public class Restartable {
         });
     }
 
+    /**
+     * Works like {@link #channel(DeliveryMethod, ObservableFactoryNoArg)} but emits notifications in batches.
+     * See {@link #batchChannel(DeliveryMethod, int, long, TimeUnit, ObservableFactory)}.
+     *
+     * @param type                   a type of the channel.
+     * @param maxCount               a maximum number of notifications in a batch.
+     * @param timespan               a maximum time to collect a batch.
+     * @param unit                   a time unit of timespan.
+     * @param observableFactoryNoArg an observable factory which will be used to create an observable per launch.
+     * @return an observable which emits lists of {@link rx.Notification} of onNext and onError observable emissions.
+     */
+    public <T> Observable<List<Notification<T>>> batchChannel(
+        DeliveryMethod type,
+        final int maxCount,
+        final long timespan,
+        final TimeUnit unit,
+        final ObservableFactoryNoArg<T> observableFactoryNoArg) {
+
+        return unbatch(channel(type, new ObservableFactoryNoArg<List<Notification<T>>>() {
+            @Override
+            public Observable<List<Notification<T>>> call() {
+                return batch(observableFactoryNoArg.call(), maxCount, timespan, unit);
+            }
+        }));
+    }
+
+    /**
+     * Works like {@link #channel(DeliveryMethod, ObservableFactory)} but emits notifications in batches.
+     * A batch is emitted when it has maxCount notifications or when timespan passes, so a high-frequency
+     * observable passes the channel and the delivery method once per batch instead of once per value.
+     * An onError notification is the last notification of the last batch.
+     *
+     * Use {@link RxNotification#splitBatch(Action1, Action1)} to handle a batch.
+     *
+     * @param type              a type of the channel. A delivery method applies to batches, for example
+     *                          {@link DeliveryMethod#LATEST} keeps the latest batch.
+     * @param maxCount          a maximum number of notifications in a batch.
+     * @param timespan          a maximum time to collect a batch.
+     * @param unit              a time unit of timespan.
+     * @param observableFactory an observable factory which will be used to create an observable per launch.
+     * @return an observable which emits lists of {@link rx.Notification} of onNext and onError observable emissions.
+     */
+    public <A, T> Observable<List<Notification<T>>> batchChannel(
+        DeliveryMethod type,
+        final int maxCount,
+        final long timespan,
+        final TimeUnit unit,
+        final ObservableFactory<A, T> observableFactory) {
+
+        return unbatch(channel(type, new ObservableFactory<A, List<Notification<T>>>() {
+            @Override
+            public Observable<List<Notification<T>>> call(A arg) {
+                return batch(observableFactory.call(arg), maxCount, timespan, unit);
+            }
+        }));
+    }
+
     /**
      * Launches an observable without providing arguments.
      * Dismisses the previous observable instance if it is not completed yet.
@@ -121,9 +219,55 @@ public class Restartable {
      *            method argument requirements.
      */
     public void launch(Object arg) {
+        prepareLaunch(arg);
+        fireLaunch(arg);
+    }
+
+    /**
+     * Launches an observable like {@link #launch(Object)} does, unless the current observable has been launched
+     * with an equal argument and it is not completed yet. This prevents duplicate launches on repeated user actions.
+     *
+     * Arguments are compared with {@link Object#equals(Object)}, arrays are compared by their content.
+     * The current argument is unmarshalled for the comparison, so an argument that has been changed
+     * after the launch is compared in the state it had during the launch.
+     *
+     * @param arg an argument for the new observable.
+     *            It must satisfy {@link android.os.Parcel#writeValue(Object)}
+     *            method argument requirements.
+     * @return true if the observable has been launched, false if the current observable is kept.
+     */
+    public boolean launchIfChanged(Object arg) {
+        if (ReconnectableMap.INSTANCE.isRunning(key)) {
+            if (launched == null)
+                launched = out.build();
+            if (launched.get("restore", false) && Arrays.deepEquals(new Object[]{launched.get("arg")}, new Object[]{arg}))
+                return false;
+        }
+        launch(arg);
+        return true;
+    }
+
+    /**
+     * Dismisses the current observable and saves an argument of a new launch without launching it.
+     * {@link #fireLaunch(Object)} should be called after this call to complete the launch.
+     */
+    void prepareLaunch(Object arg) {
         ReconnectableMap.INSTANCE.dismiss(key);
         out.put("restore", true);
         out.put("arg", arg);
+        launched = null;
+    }
+
+    /**
+     * Returns a key which has been saved into a given restartable state, or null if the state has no key.
+     */
+    static RestartableId restoredKey(ValueMap in) {
+        if (!in.containsKey("keyNonce") || !in.containsKey("keySequence"))
+            return null;
+        return new RestartableId(in.<Long>get("keyNonce"), in.<Long>get("keySequence"));
+    }
+
+    void fireLaunch(Object arg) {
         launches.onNext(arg);
     }
 
@@ -134,6 +278,35 @@ public class Restartable {
         ReconnectableMap.INSTANCE.dismiss(key);
         out.remove("restore");
         out.remove("arg");
+        launched = null;
+    }
+
+    private static <T> Observable<List<Notification<T>>> batch(Observable<T> observable, int maxCount, long timespan, TimeUnit unit) {
+        return observable
+            .materialize()
+            .filter(new Func1<Notification<T>, Boolean>() {
+                @Override
+                public Boolean call(Notification<T> notification) {
+                    return !notification.isOnCompleted();
+                }
+            })
+            .buffer(timespan, unit, maxCount)
+            .filter(new Func1<List<Notification<T>>, Boolean>() {
+                @Override
+                public Boolean call(List<Notification<T>> batch) {
+                    return !batch.isEmpty();
+                }
+            });
+    }
+
+    private static <T> Observable<List<Notification<T>>> unbatch(Observable<Notification<List<Notification<T>>>> channel) {
+        return channel.map(new Func1<Notification<List<Notification<T>>>, List<Notification<T>>>() {
+            @Override
+            public List<Notification<T>> call(Notification<List<Notification<T>>> notification) {
+                return notification.isOnNext() ? notification.getValue() :
+                    Collections.singletonList(Notification.<T>createOnError(notification.getThrowable()));
+            }
+        });
     }
 
     private <T> Observable<Notification<T>> channel(final DeliveryMethod type, Func1<Object, Observable<Notification<T>>> instantiate) {
@@ -0,0 +1,64 @@
+package satellite;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A unique key of a {@link Restartable} channel.
+ *
+ * An id consists of a per-process random nonce and a sequence number, so ids that have been
+ * created in the current process never collide with each other, and they do not collide with ids
+ * that have been restored from a previous process instance.
+ */
+public final class RestartableId {
+
+    private static final long NONCE = new Random().nextLong() ^ System.nanoTime();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    final long nonce;
+    final long sequence;
+
+    RestartableId(long nonce, long sequence) {
+        this.nonce = nonce;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns a new unique id. Use it to create channels of {@link ReconnectableMap} directly.
+     */
+    public static RestartableId next() {
+        return new RestartableId(NONCE, SEQUENCE.incrementAndGet());
+    }
+
+    /**
+     * Returns true if the id has been created by the current process.
+     */
+    boolean isCurrentProcess() {
+        return nonce == NONCE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof RestartableId))
+            return false;
+        RestartableId that = (RestartableId)o;
+        return sequence == that.sequence && nonce == that.nonce;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(nonce, sequence);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(nonce) + ":" + sequence;
+    }
+
+    static int hash(long nonce, long sequence) {
+        long hash = sequence * 0x9E3779B97F4A7C15L ^ nonce;
+        return (int)(hash ^ (hash >>> 32));
+    }
+}
@@ -1,9 +1,14 @@
 package satellite;
 
-import android.util.SparseArray;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import rx.Notification;
 import rx.Observable;
+import rx.Scheduler;
 import valuemap.ValueMap;
 
 /**
@@ -12,8 +17,13 @@ import valuemap.ValueMap;
  */
 public class RestartableSet implements Launcher {
 
-    private final SparseArray<Restartable> restartables = new SparseArray<>();
+    private static final Object DISMISS = new Object();
+
+    private final IntArrayMap<Restartable> restartables = new IntArrayMap<>();
+    private final IntArrayMap<Object> dismissed = new IntArrayMap<>(); // restored ids dismissed before their instantiation
+    private final ValueMap in;
     private final ValueMap.Builder out;
+    private final Scheduler deliveryScheduler;
 
     /**
      * Creates a new RestartableSet instance.
@@ -21,21 +31,48 @@ public class RestartableSet implements Launcher {
      * @param out an output that will be used to reconstruct the RestartableSet later.
      */
     public RestartableSet(ValueMap.Builder out) {
-        this.out = out;
+        this(out, null);
+    }
+
+    /**
+     * Creates a new RestartableSet instance which delivers notifications of all its channels on a given scheduler,
+     * see {@link ReconnectableMap#channel(RestartableId, Object, DeliveryMethod, Scheduler, rx.functions.Func0)}.
+     *
+     * @param out               an output that will be used to reconstruct the RestartableSet later.
+     * @param deliveryScheduler a scheduler to deliver notifications on, usually the main thread scheduler,
+     *                          or null to deliver them on the observable's thread.
+     */
+    public RestartableSet(ValueMap.Builder out, Scheduler deliveryScheduler) {
+        this(null, out, deliveryScheduler);
     }
 
     /**
      * Creates a RestartableSet instance form a given state that has been received
      * from the previous instance`s out argument.
-     * All instances of {@link Restartable} will be restored as well.
+     * All instances of {@link Restartable} will be restored as well. A restartable is instantiated
+     * when it is used for the first time.
      *
      * @param in  a value that has been constructed using the out argument of the previous RestartableSet`s instance.
      * @param out an output that will be used to reconstruct the RestartableSet later.
      */
     public RestartableSet(ValueMap in, ValueMap.Builder out) {
+        this(in, out, null);
+    }
+
+    /**
+     * Creates a RestartableSet instance form a given state that has been received
+     * from the previous instance`s out argument. The set delivers notifications of all its channels
+     * on a given scheduler.
+     *
+     * @param in                a value that has been constructed using the out argument of the previous RestartableSet`s instance.
+     * @param out               an output that will be used to reconstruct the RestartableSet later.
+     * @param deliveryScheduler a scheduler to deliver notifications on, usually the main thread scheduler,
+     *                          or null to deliver them on the observable's thread.
+     */
+    public RestartableSet(ValueMap in, ValueMap.Builder out, Scheduler deliveryScheduler) {
+        this.in = in;
         this.out = out;
-        for (String sId : in.keys())
-            restartables.put(Integer.valueOf(sId), new Restartable((ValueMap)in.get(sId), out.child(sId)));
+        this.deliveryScheduler = deliveryScheduler;
     }
 
     /**
@@ -71,6 +108,40 @@ public class RestartableSet implements Launcher {
         return this.<A, T>restartable(id).channel(type, observableFactory);
     }
 
+    /**
+     * Provides a channel which emits notifications in batches,
+     * see {@link Restartable#batchChannel(DeliveryMethod, int, long, TimeUnit, ObservableFactoryNoArg)}.
+     *
+     * @param id                     a {@link Restartable} id.
+     * @param type                   a type of the channel.
+     * @param maxCount               a maximum number of notifications in a batch.
+     * @param timespan               a maximum time to collect a batch.
+     * @param unit                   a time unit of timespan.
+     * @param observableFactoryNoArg an observable factory which will be used to create an observable per launch.
+     * @return an observable which emits lists of {@link rx.Notification} of onNext and onError observable emissions.
+     */
+    public <T> Observable<List<Notification<T>>> batchChannel(int id, DeliveryMethod type, int maxCount, long timespan, TimeUnit unit,
+                                                             ObservableFactoryNoArg<T> observableFactoryNoArg) {
+        return restartable(id).batchChannel(type, maxCount, timespan, unit, observableFactoryNoArg);
+    }
+
+    /**
+     * Provides a channel which emits notifications in batches,
+     * see {@link Restartable#batchChannel(DeliveryMethod, int, long, TimeUnit, ObservableFactory)}.
+     *
+     * @param id                a {@link Restartable} id.
+     * @param type              a type of the channel.
+     * @param maxCount          a maximum number of notifications in a batch.
+     * @param timespan          a maximum time to collect a batch.
+     * @param unit              a time unit of timespan.
+     * @param observableFactory an observable factory which will be used to create an observable per launch.
+     * @return an observable which emits lists of {@link rx.Notification} of onNext and onError observable emissions.
+     */
+    public <A, T> Observable<List<Notification<T>>> batchChannel(int id, DeliveryMethod type, int maxCount, long timespan, TimeUnit unit,
+                                                                ObservableFactory<A, T> observableFactory) {
+        return restartable(id).batchChannel(type, maxCount, timespan, unit, observableFactory);
+    }
+
     /**
      * Launches an observable without providing arguments.
      * Dismisses the previous observable instance if it is not completed yet.
@@ -100,6 +171,20 @@ public class RestartableSet implements Launcher {
         restartable(id).launch(arg);
     }
 
+    /**
+     * Launches an observable unless the current observable has been launched with an equal argument
+     * and it is not completed yet, see {@link Restartable#launchIfChanged(Object)}.
+     *
+     * @param id  a {@link Restartable} id.
+     * @param arg an argument for the new observable.
+     *            It must satisfy {@link android.os.Parcel#writeValue(Object)}
+     *            method argument requirements.
+     * @return true if the observable has been launched, false if the current observable is kept.
+     */
+    public boolean launchIfChanged(int id, Object arg) {
+        return restartable(id).launchIfChanged(arg);
+    }
+
     /**
      * Unsubscribes and dismisses the current observable of a given {@link Restartable}.
      *
@@ -107,8 +192,35 @@ public class RestartableSet implements Launcher {
      */
     @Override
     public void dismiss(int id) {
-        if (restartables.get(id) != null)
-            restartables.get(id).dismiss();
+        Restartable restartable = restartables.get(id);
+        if (restartable != null)
+            restartable.dismiss();
+        else
+            dismissRestored(id, Integer.toString(id));
+    }
+
+    /**
+     * Launches observables of given restartables without providing arguments, see {@link #transaction()}.
+     *
+     * @param ids {@link Restartable} ids.
+     */
+    public void launchAll(int... ids) {
+        Transaction transaction = transaction();
+        for (int id : ids)
+            transaction.launch(id);
+        transaction.commit();
+    }
+
+    /**
+     * Creates a transaction which applies many launches and dismisses together.
+     * Nothing happens until {@link Transaction#commit()} is called. During the commit all previous observables
+     * are dismissed and all arguments are saved first, and only then new observables are launched, so a subscriber
+     * that receives a notification of one of the launched channels observes the complete set of changes.
+     *
+     * @return a new transaction.
+     */
+    public Transaction transaction() {
+        return new Transaction();
     }
 
     /**
@@ -116,12 +228,117 @@ public class RestartableSet implements Launcher {
      */
     public void dismiss() {
         for (int i = 0; i < restartables.size(); i++)
-            dismiss(restartables.keyAt(i));
+            restartables.valueAt(i).dismiss();
+        if (in != null) {
+            for (String sId : in.keys()) {
+                int id = Integer.parseInt(sId);
+                if (restartables.get(id) == null)
+                    dismissRestored(id, sId);
+            }
+        }
+    }
+
+    /**
+     * A set of launches and dismisses that are applied by {@link #commit()}.
+     * If there are many operations for the same id, only the last one is applied.
+     */
+    public class Transaction {
+
+        private final LinkedHashMap<Integer, Object> operations = new LinkedHashMap<>();
+        private boolean committed;
+
+        private Transaction() {
+        }
+
+        /**
+         * Adds a launch without an argument, see {@link RestartableSet#launch(int)}.
+         *
+         * @param id a {@link Restartable} id.
+         * @return the same transaction instance.
+         */
+        public Transaction launch(int id) {
+            return launch(id, null);
+        }
+
+        /**
+         * Adds a launch with an argument, see {@link RestartableSet#launch(int, Object)}.
+         * The argument is marshalled during {@link #commit()}, so it should not be changed until then.
+         *
+         * @param id  a {@link Restartable} id.
+         * @param arg an argument for the new observable.
+         * @return the same transaction instance.
+         */
+        public Transaction launch(int id, Object arg) {
+            return add(id, arg);
+        }
+
+        /**
+         * Adds a dismiss, see {@link RestartableSet#dismiss(int)}.
+         *
+         * @param id a {@link Restartable} id.
+         * @return the same transaction instance.
+         */
+        public Transaction dismiss(int id) {
+            return add(id, DISMISS);
+        }
+
+        /**
+         * Applies all operations of the transaction. A transaction can be committed only once.
+         */
+        public void commit() {
+            if (committed)
+                throw new IllegalStateException("The transaction has already been committed");
+            committed = true;
+
+            ArrayList<Restartable> launched = new ArrayList<>(operations.size());
+            ArrayList<Object> args = new ArrayList<>(operations.size());
+            for (Map.Entry<Integer, Object> entry : operations.entrySet()) {
+                if (entry.getValue() == DISMISS)
+                    RestartableSet.this.dismiss(entry.getKey());
+                else {
+                    Restartable restartable = restartable(entry.getKey());
+                    restartable.prepareLaunch(entry.getValue());
+                    launched.add(restartable);
+                    args.add(entry.getValue());
+                }
+            }
+            for (int i = 0; i < launched.size(); i++)
+                launched.get(i).fireLaunch(args.get(i));
+        }
+
+        private Transaction add(int id, Object operation) {
+            if (committed)
+                throw new IllegalStateException("The transaction has already been committed");
+            operations.remove(id);
+            operations.put(id, operation);
+            return this;
+        }
+    }
+
+    /**
+     * Dismisses a restored restartable which has not been instantiated yet. It is not instantiated for this,
+     * the next use of the id creates a new {@link Restartable}.
+     */
+    private void dismissRestored(int id, String sId) {
+        if (in == null || !in.containsKey(sId) || dismissed.get(id) != null)
+            return;
+        RestartableId key = Restartable.restoredKey((ValueMap)in.get(sId));
+        if (key != null)
+            ReconnectableMap.INSTANCE.dismiss(key);
+        out.child(sId).remove("restore").remove("arg");
+        dismissed.put(id, DISMISS);
     }
 
     private Restartable restartable(int id) {
-        if (restartables.get(id) == null)
-            restartables.put(id, new Restartable(out.child(Integer.toString(id))));
-        return restartables.get(id);
+        Restartable restartable = restartables.get(id);
+        if (restartable == null) {
+            String sId = Integer.toString(id);
+            if (in != null && in.containsKey(sId) && dismissed.get(id) == null)
+                restartable = new Restartable((ValueMap)in.get(sId), out.child(sId), deliveryScheduler);
+            else
+                restartable = new Restartable(out.child(sId), deliveryScheduler);
+            restartables.put(id, restartable);
+        }
+        return restartable;
     }
 }
@@ -0,0 +1,362 @@
+package satellite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Observer;
+import rx.Scheduler;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+import valuemap.Codec;
+
+/**
+ * {@link ResultCache} keeps results of completed observables, so a launch with the same argument
+ * replays the result immediately instead of calling the observable factory again.
+ *
+ * Use {@link #cached(String, ObservableFactory)} to add the cache in front of a factory of a specific channel.
+ * Results are keyed by the given id and the marshalled argument, so factories that return different results
+ * for the same argument must use different ids. {@link #cached(ObservableFactory)} uses the factory class
+ * name as the id, it should only be used with factories which have no state that affects their results.
+ * Values are kept marshalled, so each launch receives fresh instances.
+ * Only observables which have completed successfully are cached.
+ *
+ * A result expires after a given time to live. When the cache exceeds a maximum number of entries
+ * or a maximum number of bytes, the least recently used results are evicted.
+ */
+public class ResultCache {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Codec codec;
+    private final Scheduler clock;
+
+    // guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache which uses {@link Codec#BINARY} and the system clock.
+     *
+     * @param ttl        a time to live of a result, 0 or at least 1 millisecond.
+     * @param unit       a time unit of ttl.
+     * @param maxEntries a maximum number of results.
+     * @param maxBytes   a maximum total size of marshalled results.
+     */
+    public ResultCache(long ttl, TimeUnit unit, int maxEntries, long maxBytes) {
+        this(ttl, unit, maxEntries, maxBytes, Codec.BINARY, Schedulers.immediate());
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttl        a time to live of a result, 0 or at least 1 millisecond.
+     * @param unit       a time unit of ttl.
+     * @param maxEntries a maximum number of results.
+     * @param maxBytes   a maximum total size of marshalled results.
+     * @param codec      a codec for arguments and onNext values.
+     * @param clock      a scheduler which {@link Scheduler#now()} is used as a clock.
+     */
+    public ResultCache(long ttl, TimeUnit unit, int maxEntries, long maxBytes, Codec codec, Scheduler clock) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries > 0 required but it was " + maxEntries);
+        this.ttlMillis = unit.toMillis(ttl);
+        if (ttl > 0 && ttlMillis == 0) // the clock has millisecond precision
+            throw new IllegalArgumentException("ttl of at least 1 millisecond required but it was " + ttl + " " + unit);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.codec = codec;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns an observable factory which replays a cached result of a given factory if there is one.
+     * Results are keyed by the factory class, so the factory must not have a state that affects its results,
+     * use {@link #cached(String, ObservableFactory)} otherwise.
+     * Arguments and onNext values must be supported by the cache's codec, otherwise results are not cached.
+     *
+     * @param factory a stateless observable factory.
+     * @return a caching observable factory.
+     */
+    public <A, T> ObservableFactory<A, T> cached(ObservableFactory<A, T> factory) {
+        return cached(factory.getClass().getName(), factory);
+    }
+
+    /**
+     * Returns an observable factory which replays a cached result of a given factory if there is one.
+     * Arguments and onNext values must be supported by the cache's codec, otherwise results are not cached.
+     *
+     * @param id      an id of the factory results, factories which return different results
+     *                for the same argument must have different ids.
+     * @param factory an observable factory.
+     * @return a caching observable factory.
+     */
+    public <A, T> ObservableFactory<A, T> cached(final String id, final ObservableFactory<A, T> factory) {
+        if (id == null)
+            throw new NullPointerException("id");
+        return new ObservableFactory<A, T>() {
+            @Override
+            public Observable<T> call(final A arg) {
+                return cached(id, arg, new Func0<Observable<T>>() {
+                    @Override
+                    public Observable<T> call() {
+                        return factory.call(arg);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Returns an observable factory which replays a cached result of a given factory if there is one.
+     * Results are keyed by the factory class, so the factory must not have a state that affects its results,
+     * use {@link #cached(String, ObservableFactoryNoArg)} otherwise.
+     * onNext values must be supported by the cache's codec, otherwise results are not cached.
+     *
+     * @param factory a stateless observable factory.
+     * @return a caching observable factory.
+     */
+    public <T> ObservableFactoryNoArg<T> cached(ObservableFactoryNoArg<T> factory) {
+        return cached(factory.getClass().getName(), factory);
+    }
+
+    /**
+     * Returns an observable factory which replays a cached result of a given factory if there is one.
+     * onNext values must be supported by the cache's codec, otherwise results are not cached.
+     *
+     * @param id      an id of the factory results, factories which return different results must have different ids.
+     * @param factory an observable factory.
+     * @return a caching observable factory.
+     */
+    public <T> ObservableFactoryNoArg<T> cached(final String id, final ObservableFactoryNoArg<T> factory) {
+        if (id == null)
+            throw new NullPointerException("id");
+        return new ObservableFactoryNoArg<T>() {
+            @Override
+            public Observable<T> call() {
+                return cached(id, null, factory);
+            }
+        };
+    }
+
+    /**
+     * Removes all results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Returns cache statistics.
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    private <T> Observable<T> cached(final String id, final Object arg, final Func0<Observable<T>> factory) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                final Key key = key(id, arg);
+                List<byte[]> values = key == null ? null : get(key);
+                if (values == null)
+                    return factory.call().doOnEach(new Recorder<T>(key));
+
+                ArrayList<T> result = new ArrayList<>(values.size());
+                for (byte[] value : values)
+                    result.add(codec.<T>unmarshall(value));
+                return Observable.from(result);
+            }
+        });
+    }
+
+    private Key key(String id, Object arg) {
+        try {
+            return new Key(id, arg == null ? null : codec.marshall(arg));
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private synchronized List<byte[]> get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && clock.now() - entry.time >= ttlMillis) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.values;
+    }
+
+    private synchronized void put(Key key, List<byte[]> values, long size) {
+        if (size > maxBytes)
+            return;
+        remove(key);
+        entries.put(key, new Entry(values, size, clock.now()));
+        bytes += size;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.size;
+            evictions++;
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+            bytes -= entry.size;
+    }
+
+    private class Recorder<T> implements Observer<T> {
+
+        final Key key;
+        final ArrayList<byte[]> values = new ArrayList<>();
+        long size;
+        boolean cacheable;
+
+        Recorder(Key key) {
+            this.key = key;
+            this.cacheable = key != null;
+        }
+
+        @Override
+        public void onNext(T value) {
+            if (!cacheable)
+                return;
+            try {
+                byte[] bytes = codec.marshall(value);
+                values.add(bytes);
+                size += bytes.length;
+                cacheable = size <= maxBytes;
+            }
+            catch (RuntimeException e) {
+                cacheable = false;
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public void onCompleted() {
+            if (cacheable)
+                put(key, values, size);
+        }
+    }
+
+    private static class Entry {
+
+        final List<byte[]> values;
+        final long size;
+        final long time;
+
+        Entry(List<byte[]> values, long size, long time) {
+            this.values = values;
+            this.size = size;
+            this.time = time;
+        }
+    }
+
+    private static class Key {
+
+        final String id;
+        final byte[] arg;
+
+        Key(String id, byte[] arg) {
+            this.id = id;
+            this.arg = arg;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key that = (Key)o;
+            return id.equals(that.id) && Arrays.equals(arg, that.arg);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + Arrays.hashCode(arg);
+        }
+    }
+
+    /**
+     * Cache statistics.
+     */
+    public static class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final long bytes;
+
+        Stats(long hits, long misses, long evictions, int size, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the number of launches that have been served from the cache.
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * Returns the number of launches that have called the observable factory.
+         */
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * Returns the number of results that have been evicted because of maxEntries or maxBytes limits.
+         */
+        public long evictions() {
+            return evictions;
+        }
+
+        /**
+         * Returns the number of cached results.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the total size of cached results in bytes.
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + ", bytes=" + bytes + '}';
+        }
+    }
+}
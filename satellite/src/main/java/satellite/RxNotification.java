@@ -2,6 +2,9 @@ package satellite;
 
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import rx.Notification;
 import rx.exceptions.OnErrorNotImplementedException;
 import rx.functions.Action1;
@@ -57,4 +60,42 @@ public class RxNotification {
             }
         };
     }
+
+    /**
+     * Returns an {@link Action1} which can be used to split a batch of notifications of a batching channel
+     * (see {@link Restartable#batchChannel(DeliveryMethod, int, long, java.util.concurrent.TimeUnit, ObservableFactory)})
+     * into one onNext call with all values of the batch and an onError call.
+     *
+     * @param onNext  a method that will be called with onNext values of a batch if there are any, or null.
+     * @param onError a method that will be called in case of onError notification, or null.
+     * @param <T>     a type of onNext values.
+     * @return an {@link Action1} that can be used to split a batch of notifications into appropriate
+     * onNext, onError calls.
+     */
+    public static <T> Action1<List<Notification<T>>> splitBatch(
+        @Nullable final Action1<List<T>> onNext,
+        @Nullable final Action1<Throwable> onError) {
+
+        return new Action1<List<Notification<T>>>() {
+            @Override
+            public void call(List<Notification<T>> notifications) {
+                ArrayList<T> values = new ArrayList<>(notifications.size());
+                Throwable throwable = null;
+                for (Notification<T> notification : notifications) {
+                    if (notification.isOnNext())
+                        values.add(notification.getValue());
+                    else if (notification.isOnError())
+                        throwable = notification.getThrowable();
+                }
+                if (onNext != null && !values.isEmpty())
+                    onNext.call(values);
+                if (throwable != null) {
+                    if (onError != null)
+                        onError.call(throwable);
+                    else
+                        throw new OnErrorNotImplementedException(throwable);
+                }
+            }
+        };
+    }
 }
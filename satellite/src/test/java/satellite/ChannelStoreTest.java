@@ -0,0 +1,222 @@
+package satellite;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Notification;
+import rx.Observable;
+import rx.functions.Func0;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import valuemap.Codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelStoreTest {
+
+    private static final int ALL = Integer.MAX_VALUE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restores_terminated_channel() throws Exception {
+        RestartableId key = new RestartableId(1, 1);
+        ChannelStore store = store();
+        store.write(key, Notification.createOnNext(1), ALL);
+        store.write(key, Notification.createOnNext("2"), ALL);
+        store.write(key, Notification.createOnCompleted(), ALL);
+
+        ChannelStore restarted = store();
+        assertEquals(Arrays.asList(Notification.createOnNext(1), Notification.createOnNext("2")), restarted.restore(key, ALL));
+        assertNull(restarted.restore(key, ALL));
+    }
+
+    @Test
+    public void restores_error() throws Exception {
+        RestartableId key = new RestartableId(1, 2);
+        store().write(key, Notification.createOnError(new IllegalStateException("error")), ALL);
+
+        List<Notification<Object>> restored = store().restore(key, ALL);
+        assertEquals(1, restored.size());
+        assertEquals("error", restored.get(0).getThrowable().getMessage());
+    }
+
+    @Test
+    public void replaces_notifications() throws Exception {
+        RestartableId key = new RestartableId(1, 3);
+        ChannelStore store = store();
+        store.write(key, Notification.createOnNext(1), 1);
+        store.write(key, Notification.createOnNext(2), 1);
+        store.write(key, Notification.createOnCompleted(), ALL);
+
+        assertEquals(Arrays.asList(Notification.createOnNext(2)), store().restore(key, ALL));
+    }
+
+    @Test
+    public void keeps_bounded_number_of_notifications() throws Exception {
+        RestartableId key = new RestartableId(1, 9);
+        ChannelStore store = store();
+        for (int i = 0; i < 100; i++)
+            store.write(key, Notification.createOnNext(i), 3);
+        int record = 5 + Codec.BINARY.marshall(99).length;
+        assertTrue(new File(folder.getRoot(), "1-9").length() <= 2 * 3 * record);
+        store.write(key, Notification.createOnNext(100), 3);
+        store.write(key, Notification.createOnCompleted(), 3);
+
+        assertEquals(Arrays.asList(Notification.createOnNext(98), Notification.createOnNext(99), Notification.createOnNext(100)),
+            store().restore(key, 3));
+    }
+
+    @Test
+    public void flushes_continuous_writes() throws Exception {
+        RestartableId key = new RestartableId(1, 10);
+        final AtomicInteger flushes = new AtomicInteger();
+        File directory = new File(folder.getRoot().getPath()) {
+            @Override
+            public boolean mkdirs() {
+                flushes.incrementAndGet(); // called once per flushed file
+                return super.mkdirs();
+            }
+        };
+        TestScheduler scheduler = new TestScheduler();
+        ChannelStore store = new ChannelStore(directory, Codec.BINARY, scheduler);
+
+        store.write(key, Notification.createOnNext(new byte[ChannelStore.FLUSH_BYTES]), ALL);
+        store.write(key, Notification.createOnNext("1"), ALL);
+        assertFalse(new File(directory, "1-a").exists());
+        scheduler.triggerActions();
+        assertEquals(2, flushes.get());
+        assertTrue(new File(directory, "1-a").length() > ChannelStore.FLUSH_BYTES);
+    }
+
+    @Test
+    public void persists_values_as_written() throws Exception {
+        RestartableId key = new RestartableId(1, 11);
+        TestScheduler scheduler = new TestScheduler();
+        ChannelStore store = new ChannelStore(folder.getRoot(), Codec.BINARY, scheduler);
+        int[] value = {1};
+
+        store.write(key, Notification.createOnNext(value), ALL);
+        store.write(key, Notification.createOnCompleted(), ALL);
+        value[0] = 2;
+        scheduler.triggerActions();
+
+        List<Notification<int[]>> restored = store().restore(key, ALL);
+        assertEquals(1, restored.get(0).getValue()[0]);
+    }
+
+    @Test
+    public void unmarshallable_value_terminates_persistent_channel() throws Exception {
+        RestartableId key = new RestartableId(1, 12);
+        ChannelStore store = new ChannelStore(folder.getRoot(), new Codec() {
+            @Override
+            public byte[] marshall(Object value) {
+                throw new IllegalStateException("not marshallable");
+            }
+
+            @Override
+            public <T> T unmarshall(byte[] array) {
+                throw new AssertionError();
+            }
+        }, Schedulers.immediate());
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.persistent(DeliveryMethod.REPLAY, store), factory(Observable.just(1, 2)))
+            .subscribe(subscriber);
+
+        List<Notification<Integer>> received = subscriber.getOnNextEvents();
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).getThrowable() instanceof IllegalArgumentException);
+        assertFalse(new File(folder.getRoot(), "1-c").exists());
+
+        ReconnectableMap.INSTANCE.dismiss(key);
+    }
+
+    @Test
+    public void does_not_restore_incomplete_channel() throws Exception {
+        RestartableId key = new RestartableId(1, 4);
+        store().write(key, Notification.createOnNext(1), ALL);
+
+        assertNull(store().restore(key, ALL));
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void does_not_restore_channel_of_current_process() throws Exception {
+        RestartableId key = RestartableId.next();
+        store().write(key, Notification.createOnCompleted(), ALL);
+        assertNull(store().restore(key, ALL));
+    }
+
+    @Test
+    public void delete_and_clear() throws Exception {
+        RestartableId key1 = new RestartableId(1, 5);
+        RestartableId key2 = new RestartableId(1, 6);
+        ChannelStore store = store();
+        store.write(key1, Notification.createOnCompleted(), ALL);
+        store.write(key2, Notification.createOnCompleted(), ALL);
+        assertEquals(2, folder.getRoot().list().length);
+
+        store.delete(key1);
+        assertEquals(1, folder.getRoot().list().length);
+        store.clear();
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void persistent_delivery_method_writes_notifications() throws Exception {
+        RestartableId key = new RestartableId(1, 7);
+        ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.persistent(DeliveryMethod.REPLAY, store()), factory(Observable.just(1, 2)))
+            .subscribe(new TestSubscriber<Notification<Integer>>());
+
+        assertEquals(Arrays.asList(Notification.createOnNext(1), Notification.createOnNext(2)), store().restore(key, ALL));
+
+        ReconnectableMap.INSTANCE.dismiss(key);
+        assertFalse(new File(folder.getRoot(), "1-7").exists());
+    }
+
+    @Test
+    public void persistent_delivery_method_restores_notifications() throws Exception {
+        RestartableId key = new RestartableId(1, 8);
+        ChannelStore previous = store();
+        previous.write(key, Notification.createOnNext(3), 1);
+        previous.write(key, Notification.createOnCompleted(), ALL);
+
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.persistent(DeliveryMethod.LATEST, store()), new Func0<Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call() {
+                throw new AssertionError("the observable must not be relaunched");
+            }
+        }).subscribe(subscriber);
+
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(3)));
+        assertFalse(ReconnectableMap.INSTANCE.keys().contains(key));
+
+        ReconnectableMap.INSTANCE.dismiss(key);
+        assertFalse(new File(folder.getRoot(), "1-8").exists());
+    }
+
+    private ChannelStore store() {
+        return new ChannelStore(folder.getRoot(), Codec.BINARY, Schedulers.immediate());
+    }
+
+    private static <T> Func0<Observable<T>> factory(final Observable<T> observable) {
+        return new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                return observable;
+            }
+        };
+    }
+}
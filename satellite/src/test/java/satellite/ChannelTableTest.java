@@ -0,0 +1,168 @@
+package satellite;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Subscription;
+import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelTableTest {
+
+    @Test
+    public void testPutRemove() throws Exception {
+        ChannelTable table = new ChannelTable(new AtomicInteger());
+        RestartableId key = RestartableId.next();
+        Subject subject = PublishSubject.create();
+        Subscription subscription = Subscriptions.empty();
+
+        table.put(key, subject, DeliveryMethod.LATEST, null);
+        assertSame(subject, table.subject(key));
+        assertFalse(table.setSubscription(key, PublishSubject.create(), subscription));
+        assertTrue(table.setSubscription(key, subject, subscription));
+
+        HashSet<RestartableId> keys = new HashSet<>();
+        table.subscribedKeys(keys);
+        assertEquals(1, keys.size());
+        assertTrue(keys.contains(key));
+
+        assertSame(subscription, table.remove(key));
+        assertNull(table.subject(key));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testDetach() throws Exception {
+        ChannelTable table = new ChannelTable(new AtomicInteger());
+        RestartableId key = RestartableId.next();
+        Subject subject = PublishSubject.create();
+        Subscription subscription = Subscriptions.empty();
+
+        table.put(key, subject, DeliveryMethod.LATEST, null);
+        table.setSubscription(key, subject, subscription);
+        assertNull(table.detach(key, PublishSubject.create()));
+        assertSame(subscription, table.detach(key, subject));
+        assertNull(table.detach(key, subject));
+        assertSame(subject, table.subject(key));
+
+        HashSet<RestartableId> keys = new HashSet<>();
+        table.subscribedKeys(keys);
+        assertTrue(keys.isEmpty());
+    }
+
+    @Test
+    public void testRandomOperations() throws Exception {
+        Random random = new Random(0);
+        ArrayList<RestartableId> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+            ids.add(new RestartableId(random.nextInt(3), random.nextInt(200)));
+
+        HashMap<RestartableId, Subject> expected = new HashMap<>();
+        ChannelTable table = new ChannelTable(new AtomicInteger());
+
+        for (int i = 0; i < 20000; i++) {
+            RestartableId key = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                table.remove(key);
+            }
+            else if (!expected.containsKey(key)) {
+                Subject subject = PublishSubject.create();
+                expected.put(key, subject);
+                table.put(key, subject, DeliveryMethod.LATEST, null);
+            }
+            assertEquals(expected.size(), table.size());
+        }
+
+        for (Map.Entry<RestartableId, Subject> entry : expected.entrySet())
+            assertSame(entry.getValue(), table.subject(entry.getKey()));
+        for (RestartableId id : ids) {
+            if (!expected.containsKey(id))
+                assertNull(table.subject(id));
+        }
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        AtomicInteger idle = new AtomicInteger();
+        ChannelTable table = new ChannelTable(idle);
+        RestartableId active = RestartableId.next();
+        RestartableId idle1 = RestartableId.next();
+        RestartableId idle2 = RestartableId.next();
+        RestartableId running = RestartableId.next();
+        RestartableId owned = RestartableId.next();
+        Object owner = new Object();
+        Subject subject = PublishSubject.create();
+
+        table.put(active, subject, DeliveryMethod.LATEST, null);
+        table.put(idle1, subject, DeliveryMethod.LATEST, null);
+        table.put(idle2, subject, DeliveryMethod.LATEST, null);
+        table.put(running, subject, DeliveryMethod.LATEST, null);
+        table.put(owned, subject, DeliveryMethod.LATEST, owner);
+        table.setSubscription(running, subject, Subscriptions.empty());
+        table.release(idle1, subject, 10);
+        table.release(idle2, subject, 20);
+        table.release(running, subject, 10);
+        table.release(owned, subject, 20);
+        assertEquals(4, idle.get());
+
+        AtomicLong idleEvictions = new AtomicLong();
+        AtomicLong orphanEvictions = new AtomicLong();
+        table.sweep(25, 10, 0, idleEvictions, orphanEvictions);
+        assertEquals(1, idleEvictions.get());
+        assertEquals(0, orphanEvictions.get());
+        assertNull(table.subject(idle1));
+        assertSame(subject, table.subject(running));
+        assertSame(subject, table.subject(owned));
+        assertSame(subject, table.subject(idle2));
+        assertSame(subject, table.subject(active));
+        assertEquals(3, idle.get());
+        assertEquals(3, table.idle());
+
+        table.sweep(25, 10, 0, idleEvictions, orphanEvictions);
+        assertEquals(1, idleEvictions.get());
+        table.acquire(idle2, subject, null);
+        table.acquire(running, subject, null);
+        table.acquire(owned, subject, null);
+        assertEquals(0, table.idle());
+    }
+
+    @Test
+    public void testAcquireAndOldestIdle() throws Exception {
+        AtomicInteger idle = new AtomicInteger();
+        ChannelTable table = new ChannelTable(idle);
+        RestartableId key1 = RestartableId.next();
+        RestartableId key2 = RestartableId.next();
+        Subject subject = PublishSubject.create();
+
+        table.put(key1, subject, DeliveryMethod.LATEST, null);
+        table.put(key2, subject, DeliveryMethod.LATEST, null);
+        table.release(key1, subject, 10);
+        table.release(key2, subject, 20);
+        assertEquals(10, table.oldestIdleSince());
+
+        table.acquire(key1, subject, null);
+        assertEquals(1, idle.get());
+        assertEquals(20, table.oldestIdleSince());
+
+        table.removeOldestIdle();
+        assertNull(table.subject(key2));
+        assertEquals(0, idle.get());
+        assertEquals(Long.MAX_VALUE, table.oldestIdleSince());
+    }
+}
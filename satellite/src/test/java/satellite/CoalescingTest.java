@@ -0,0 +1,166 @@
+package satellite;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingTest {
+
+    private final PublishSubject<String> source = PublishSubject.create();
+    private final AtomicInteger launches = new AtomicInteger();
+    private final AtomicInteger unsubscribes = new AtomicInteger();
+
+    private final ObservableFactory<String, String> factory = new ObservableFactory<String, String>() {
+        @Override
+        public Observable<String> call(final String arg) {
+            launches.incrementAndGet();
+            return source
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        unsubscribes.incrementAndGet();
+                    }
+                });
+        }
+    };
+
+    @Test
+    public void equal_arguments_share_the_observable() throws Exception {
+        ObservableFactory<String, String> coalescing = Coalescing.coalesce(factory);
+        TestSubscriber<String> subscriber1 = new TestSubscriber<>();
+        TestSubscriber<String> subscriber2 = new TestSubscriber<>();
+
+        coalescing.call("a").subscribe(subscriber1);
+        source.onNext("1");
+        Coalescing.coalesce(factory).call("a").subscribe(subscriber2);
+        source.onNext("2");
+
+        assertEquals(1, launches.get());
+        subscriber1.assertReceivedOnNext(Arrays.asList("1", "2"));
+        subscriber2.assertReceivedOnNext(Arrays.asList("1", "2"));
+
+        coalescing.call("b").subscribe(new TestSubscriber<String>());
+        assertEquals(2, launches.get());
+        source.onCompleted();
+    }
+
+    @Test
+    public void replays_bounded_number_of_values() throws Exception {
+        TestSubscriber<String> subscriber1 = new TestSubscriber<>();
+        Coalescing.coalesce(factory).call("a").subscribe(subscriber1);
+        source.onNext("1");
+        source.onNext("2");
+
+        TestSubscriber<String> subscriber2 = new TestSubscriber<>();
+        Coalescing.coalesce(factory).call("a").subscribe(subscriber2);
+        subscriber2.assertReceivedOnNext(Arrays.asList("2"));
+
+        TestSubscriber<String> subscriber3 = new TestSubscriber<>();
+        Coalescing.coalesce(factory, 2).call("a").subscribe(subscriber3);
+        source.onNext("3");
+        source.onNext("4");
+        TestSubscriber<String> subscriber4 = new TestSubscriber<>();
+        Coalescing.coalesce(factory, 2).call("a").subscribe(subscriber4);
+        subscriber4.assertReceivedOnNext(Arrays.asList("3", "4"));
+
+        assertEquals(2, launches.get());
+        source.onCompleted();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegal_replay_size() throws Exception {
+        Coalescing.coalesce(factory, 0);
+    }
+
+    @Test
+    public void calls_factory_outside_of_the_lock() throws Exception {
+        final ObservableFactory<String, String> coalescing = Coalescing.coalesce(factory);
+        final AtomicBoolean nested = new AtomicBoolean();
+        ObservableFactory<String, String> blocking = Coalescing.coalesce(new ObservableFactory<String, String>() {
+            @Override
+            public Observable<String> call(String arg) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        coalescing.call("b").subscribe(new TestSubscriber<String>()).unsubscribe();
+                        nested.set(true);
+                    }
+                });
+                thread.start();
+                try {
+                    thread.join(1000);
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return source;
+            }
+        });
+
+        blocking.call("a").subscribe(new TestSubscriber<String>()).unsubscribe();
+        assertTrue(nested.get());
+        assertEquals(0, Coalescing.size());
+    }
+
+    @Test
+    public void unsubscribes_after_the_last_subscriber() throws Exception {
+        ObservableFactory<String, String> coalescing = Coalescing.coalesce(factory);
+        Subscription subscription1 = coalescing.call("a").subscribe(new TestSubscriber<String>());
+        Subscription subscription2 = coalescing.call("a").subscribe(new TestSubscriber<String>());
+
+        subscription1.unsubscribe();
+        assertEquals(0, unsubscribes.get());
+        assertEquals(1, Coalescing.size());
+
+        subscription2.unsubscribe();
+        assertEquals(1, unsubscribes.get());
+        assertEquals(0, Coalescing.size());
+
+        coalescing.call("a").subscribe(new TestSubscriber<String>()).unsubscribe();
+        assertEquals(2, launches.get());
+    }
+
+    @Test
+    public void launches_again_after_completion() throws Exception {
+        ObservableFactory<String, String> coalescing = Coalescing.coalesce(factory);
+        TestSubscriber<String> subscriber1 = new TestSubscriber<>();
+        coalescing.call("a").subscribe(subscriber1);
+        source.onNext("1");
+        source.onCompleted();
+        subscriber1.assertCompleted();
+        assertEquals(0, Coalescing.size());
+
+        TestSubscriber<String> subscriber2 = new TestSubscriber<>();
+        coalescing.call("a").subscribe(subscriber2);
+        assertEquals(2, launches.get());
+        subscriber2.assertNoValues();
+        subscriber2.unsubscribe();
+    }
+
+    @Test
+    public void shares_no_arg_observables() throws Exception {
+        ObservableFactoryNoArg<String> noArg = new ObservableFactoryNoArg<String>() {
+            @Override
+            public Observable<String> call() {
+                return factory.call(null);
+            }
+        };
+        ObservableFactoryNoArg<String> coalescing = Coalescing.coalesce(noArg);
+        Subscription subscription1 = coalescing.call().subscribe(new TestSubscriber<String>());
+        Subscription subscription2 = coalescing.call().subscribe(new TestSubscriber<String>());
+        assertEquals(1, launches.get());
+        subscription1.unsubscribe();
+        subscription2.unsubscribe();
+    }
+}
@@ -0,0 +1,240 @@
+package satellite;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import rx.Notification;
+import rx.Observable;
+import rx.exceptions.MissingBackpressureException;
+import rx.functions.Func0;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeliveryMethodTest {
+
+    private static final RestartableId KEY = RestartableId.next();
+
+    @After
+    public void tearDown() throws Exception {
+        ReconnectableMap.INSTANCE.dismiss(KEY);
+    }
+
+    @Test
+    public void replay_with_size_keeps_last_values() throws Exception {
+        PublishSubject<Integer> source = PublishSubject.create();
+        ReconnectableMap.INSTANCE.channel(KEY, DeliveryMethod.replay(2), factory(source)).subscribe(new TestSubscriber<Notification<Integer>>());
+
+        source.onNext(1);
+        source.onNext(2);
+        source.onNext(3);
+
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(KEY, DeliveryMethod.replay(2), factory(source)).subscribe(subscriber);
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(2), Notification.createOnNext(3)));
+    }
+
+    @Test
+    public void replay_with_time_drops_old_values() throws Exception {
+        PublishSubject<Integer> source = PublishSubject.create();
+        DeliveryMethod method = DeliveryMethod.replay(50, TimeUnit.MILLISECONDS);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(new TestSubscriber<Notification<Integer>>());
+
+        source.onNext(1);
+        Thread.sleep(200);
+        source.onNext(2);
+
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(2)));
+    }
+
+    @Test
+    public void replay_with_size_and_time() throws Exception {
+        PublishSubject<Integer> source = PublishSubject.create();
+        DeliveryMethod method = DeliveryMethod.replay(1, 1, TimeUnit.MINUTES);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(new TestSubscriber<Notification<Integer>>());
+
+        source.onNext(1);
+        source.onNext(2);
+
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(2)));
+    }
+
+    @Test
+    public void buffered_drop_oldest() throws Exception {
+        assertBuffered(BufferedDeliveryMethod.Overflow.DROP_OLDEST, 3, 4, 5);
+    }
+
+    @Test
+    public void buffered_drop_latest() throws Exception {
+        assertBuffered(BufferedDeliveryMethod.Overflow.DROP_LATEST, 1, 2, 3);
+    }
+
+    @Test
+    public void buffered_conflate() throws Exception {
+        assertBuffered(BufferedDeliveryMethod.Overflow.CONFLATE, 1, 2, 5);
+    }
+
+    @Test
+    public void buffered_error() throws Exception {
+        PublishSubject<Integer> source = PublishSubject.create();
+        BufferedDeliveryMethod method = DeliveryMethod.buffered(DeliveryMethod.PUBLISH, 1, BufferedDeliveryMethod.Overflow.ERROR);
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>(0);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+
+        source.onNext(1);
+        source.onNext(2);
+        source.onNext(3);
+        subscriber.requestMore(10);
+
+        subscriber.assertReceivedOnNext(Collections.singletonList(Notification.createOnNext(1)));
+        subscriber.assertError(MissingBackpressureException.class);
+        subscriber.assertUnsubscribed();
+        assertEquals(1, method.dropped());
+
+        source.onNext(4);
+        assertEquals(1, subscriber.getOnNextEvents().size());
+    }
+
+    @Test
+    public void buffered_keeps_errors() throws Exception {
+        PublishSubject<Integer> source = PublishSubject.create();
+        BufferedDeliveryMethod method = DeliveryMethod.buffered(DeliveryMethod.PUBLISH, 1, BufferedDeliveryMethod.Overflow.DROP_LATEST);
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>(0);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+
+        RuntimeException error = new RuntimeException();
+        source.onNext(1);
+        source.onError(error);
+        subscriber.requestMore(10);
+
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(1), Notification.<Integer>createOnError(error)));
+        assertEquals(0, method.dropped());
+    }
+
+    @Test
+    public void latest_conflates_bursts() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(KEY, DeliveryMethod.latest(scheduler), factory(source)).subscribe(subscriber);
+
+        source.onNext(1);
+        source.onNext(2);
+        source.onNext(3);
+        subscriber.assertReceivedOnNext(Collections.<Notification<Integer>>emptyList());
+
+        scheduler.triggerActions();
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(3)));
+    }
+
+    @Test
+    public void latest_with_interval() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        DeliveryMethod method = DeliveryMethod.latest(100, TimeUnit.MILLISECONDS, scheduler);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+
+        source.onNext(1);
+        scheduler.triggerActions();
+        source.onNext(2);
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        source.onNext(3);
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(1)));
+
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(1), Notification.createOnNext(3)));
+
+        TestSubscriber<Notification<Integer>> subscriber2 = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber2);
+        scheduler.triggerActions();
+        subscriber2.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(3)));
+    }
+
+    @Test
+    public void latest_delivers_errors_immediately() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        DeliveryMethod method = DeliveryMethod.latest(1, TimeUnit.MINUTES, scheduler);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+
+        source.onNext(1);
+        scheduler.triggerActions();
+        source.onNext(2);
+        RuntimeException error = new RuntimeException();
+        source.onError(error);
+        scheduler.triggerActions();
+
+        subscriber.assertReceivedOnNext(Arrays.asList(Notification.createOnNext(1), Notification.createOnNext(2),
+            Notification.<Integer>createOnError(error)));
+    }
+
+    @Test
+    public void test_to_string() throws Exception {
+        assertEquals("REPLAY", DeliveryMethod.REPLAY.toString());
+        assertEquals("REPLAY(10)", DeliveryMethod.replay(10).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replay_with_illegal_size() throws Exception {
+        DeliveryMethod.replay(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replay_with_illegal_time() throws Exception {
+        DeliveryMethod.replay(0, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replay_with_size_and_illegal_time() throws Exception {
+        DeliveryMethod.replay(1, -1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void latest_with_sub_millisecond_interval() throws Exception {
+        DeliveryMethod.latest(500, TimeUnit.MICROSECONDS, new TestScheduler());
+    }
+
+    private void assertBuffered(BufferedDeliveryMethod.Overflow overflow, Integer... expected) {
+        PublishSubject<Integer> source = PublishSubject.create();
+        BufferedDeliveryMethod method = DeliveryMethod.buffered(DeliveryMethod.PUBLISH, 3, overflow);
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>(0);
+        ReconnectableMap.INSTANCE.channel(KEY, method, factory(source)).subscribe(subscriber);
+
+        for (int i = 1; i <= 5; i++)
+            source.onNext(i);
+        subscriber.assertReceivedOnNext(Collections.<Notification<Integer>>emptyList());
+
+        subscriber.requestMore(10);
+        ArrayList<Notification<Integer>> notifications = new ArrayList<>();
+        for (Integer value : expected)
+            notifications.add(Notification.createOnNext(value));
+        subscriber.assertReceivedOnNext(notifications);
+        assertEquals(2, method.dropped());
+
+        source.onNext(6);
+        assertEquals(Notification.createOnNext(6), subscriber.getOnNextEvents().get(3));
+    }
+
+    private static <T> Func0<Observable<T>> factory(final Observable<T> observable) {
+        return new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                return observable;
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package satellite;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IntArrayMapTest {
+
+    @Test
+    public void put_and_get() throws Exception {
+        IntArrayMap<String> map = new IntArrayMap<>();
+        for (int i = 0; i < 100; i++)
+            map.put((i * 37) % 101 - 50, Integer.toString(i));
+        map.put(-50, "replaced");
+
+        assertEquals(100, map.size());
+        assertEquals("replaced", map.get(-50));
+        assertEquals("1", map.get(-13));
+        assertNull(map.get(51));
+    }
+
+    @Test
+    public void values_are_ordered_by_key() throws Exception {
+        IntArrayMap<Integer> map = new IntArrayMap<>();
+        map.put(3, 3);
+        map.put(-1, -1);
+        map.put(2, 2);
+        map.put(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        assertEquals(-1, (int)map.valueAt(0));
+        assertEquals(2, (int)map.valueAt(1));
+        assertEquals(3, (int)map.valueAt(2));
+        assertEquals(Integer.MAX_VALUE, (int)map.valueAt(3));
+    }
+}
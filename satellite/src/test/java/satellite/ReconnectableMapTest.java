@@ -0,0 +1,293 @@
+package satellite;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReconnectableMapTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void completion_of_a_dismissed_source_does_not_affect_a_new_channel() throws Exception {
+        final PublishSubject<Integer> source1 = PublishSubject.create();
+        final PublishSubject<Integer> source2 = PublishSubject.create();
+        final RestartableId key = RestartableId.next();
+
+        ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.LATEST, factory(source1)).subscribe(new TestSubscriber<Notification<Integer>>());
+        ReconnectableMap.INSTANCE.dismiss(key);
+
+        TestSubscriber<Notification<Integer>> subscriber = new TestSubscriber<>();
+        ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.LATEST, factory(source2)).subscribe(subscriber);
+
+        source1.onCompleted();
+        assertTrue(ReconnectableMap.INSTANCE.keys().contains(key));
+
+        source2.onNext(1);
+        subscriber.assertReceivedOnNext(Collections.singletonList(Notification.createOnNext(1)));
+    }
+
+    @Test
+    public void notifications_are_delivered_on_the_delivery_scheduler() throws Exception {
+        PublishSubject<Integer> source = PublishSubject.create();
+        TestScheduler scheduler = new TestScheduler();
+        RestartableId key = RestartableId.next();
+        TestSubscriber<Notification<Integer>> subscriber1 = new TestSubscriber<>();
+        TestSubscriber<Notification<Integer>> subscriber2 = new TestSubscriber<>();
+
+        ReconnectableMap.INSTANCE.channel(key, null, DeliveryMethod.REPLAY, scheduler, factory(source)).subscribe(subscriber1);
+        ReconnectableMap.INSTANCE.channel(key, null, DeliveryMethod.REPLAY, scheduler, factory(source)).subscribe(subscriber2);
+
+        source.onNext(1);
+        source.onNext(2);
+        source.onCompleted();
+        subscriber1.assertNoValues();
+        assertTrue(ReconnectableMap.INSTANCE.keys().contains(key));
+
+        scheduler.triggerActions();
+        List<Notification<Integer>> expected = Arrays.asList(Notification.createOnNext(1), Notification.createOnNext(2));
+        subscriber1.assertReceivedOnNext(expected);
+        subscriber2.assertReceivedOnNext(expected);
+        assertFalse(ReconnectableMap.INSTANCE.keys().contains(key));
+        ReconnectableMap.INSTANCE.dismiss(key);
+    }
+
+    @Test
+    public void concurrent_channels_with_distinct_keys() throws Exception {
+        final CountDownLatch received = new CountDownLatch(THREADS * ITERATIONS);
+
+        runConcurrently(new Worker() {
+            @Override
+            public void run(int thread, Random random) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    RestartableId key = RestartableId.next();
+                    ReconnectableMap.INSTANCE
+                        .channel(key, DeliveryMethod.REPLAY, factory(Observable.just(i).subscribeOn(Schedulers.computation())))
+                        .subscribe(new Action1<Notification<Integer>>() {
+                            @Override
+                            public void call(Notification<Integer> notification) {
+                                received.countDown();
+                            }
+                        });
+                }
+            }
+        });
+
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        awaitCompletion();
+    }
+
+    @Test
+    public void concurrent_subscribe_and_dismiss_on_shared_keys() throws Exception {
+        final RestartableId[] keys = {RestartableId.next(), RestartableId.next(), RestartableId.next(), RestartableId.next()};
+        runConcurrently(new Worker() {
+            @Override
+            public void run(int thread, Random random) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    RestartableId key = keys[random.nextInt(keys.length)];
+                    if (random.nextBoolean())
+                        ReconnectableMap.INSTANCE.dismiss(key);
+                    else {
+                        ReconnectableMap.INSTANCE
+                            .channel(key, DeliveryMethod.LATEST, factory(Observable.just(i).delay(random.nextInt(100), TimeUnit.MICROSECONDS)))
+                            .subscribe(new TestSubscriber<Notification<Integer>>());
+                    }
+                }
+            }
+        });
+
+        awaitCompletion();
+    }
+
+    @Test
+    public void idle_channels_are_evicted() throws Exception {
+        RestartableId key = RestartableId.next();
+        RestartableId running = RestartableId.next();
+        AtomicInteger launches = new AtomicInteger();
+        long evicted = ReconnectableMap.INSTANCE.evictionStats().idle();
+        ReconnectableMap.INSTANCE.setEvictionPolicy(50, Long.MAX_VALUE, TimeUnit.MILLISECONDS, Integer.MAX_VALUE);
+
+        Subscription subscription = ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.LATEST, counting(Observable.just(1), launches))
+            .subscribe(new TestSubscriber<Notification<Integer>>());
+        ReconnectableMap.INSTANCE.channel(running, DeliveryMethod.LATEST, factory(PublishSubject.<Integer>create()))
+            .subscribe(new TestSubscriber<Notification<Integer>>())
+            .unsubscribe();
+        Thread.sleep(100);
+        ReconnectableMap.INSTANCE.evict();
+        assertEquals(evicted, ReconnectableMap.INSTANCE.evictionStats().idle());
+
+        subscription.unsubscribe();
+        ReconnectableMap.INSTANCE.evict();
+        assertEquals(evicted, ReconnectableMap.INSTANCE.evictionStats().idle());
+
+        Thread.sleep(100);
+        ReconnectableMap.INSTANCE.evict();
+        assertEquals(evicted + 1, ReconnectableMap.INSTANCE.evictionStats().idle());
+        assertTrue(ReconnectableMap.INSTANCE.keys().contains(running));
+
+        ReconnectableMap.INSTANCE.channel(key, DeliveryMethod.LATEST, counting(Observable.just(1), launches))
+            .subscribe(new TestSubscriber<Notification<Integer>>());
+        assertEquals(2, launches.get());
+    }
+
+    @Test
+    public void orphaned_channels_are_evicted() throws Exception {
+        RestartableId key = RestartableId.next();
+        RestartableId running = RestartableId.next();
+        long evicted = ReconnectableMap.INSTANCE.evictionStats().orphaned();
+        ReconnectableMap.INSTANCE.setEvictionPolicy(Long.MAX_VALUE, 0, TimeUnit.MILLISECONDS, Integer.MAX_VALUE);
+
+        Object owner = new Object();
+        ReconnectableMap.INSTANCE.channel(key, owner, DeliveryMethod.LATEST, factory(Observable.just(1)))
+            .subscribe(new TestSubscriber<Notification<Integer>>())
+            .unsubscribe();
+        ReconnectableMap.INSTANCE.channel(running, owner, DeliveryMethod.LATEST, factory(PublishSubject.<Integer>create()))
+            .subscribe(new TestSubscriber<Notification<Integer>>())
+            .unsubscribe();
+        Thread.sleep(1);
+        ReconnectableMap.INSTANCE.evict();
+        assertEquals(evicted, ReconnectableMap.INSTANCE.evictionStats().orphaned());
+
+        WeakReference<Object> reference = new WeakReference<>(owner);
+        owner = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (reference.get() != null && System.currentTimeMillis() < deadline)
+            System.gc();
+
+        ReconnectableMap.INSTANCE.evict();
+        assertEquals(evicted + 1, ReconnectableMap.INSTANCE.evictionStats().orphaned());
+        assertTrue(ReconnectableMap.INSTANCE.keys().contains(running));
+    }
+
+    @Test
+    public void orphaned_channels_are_kept_by_default() throws Exception {
+        RestartableId key = RestartableId.next();
+        long evicted = ReconnectableMap.INSTANCE.evictionStats().orphaned();
+
+        Object owner = new Object();
+        ReconnectableMap.INSTANCE.channel(key, owner, DeliveryMethod.LATEST, factory(Observable.just(1)))
+            .subscribe(new TestSubscriber<Notification<Integer>>())
+            .unsubscribe();
+        WeakReference<Object> reference = new WeakReference<>(owner);
+        owner = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (reference.get() != null && System.currentTimeMillis() < deadline)
+            System.gc();
+
+        ReconnectableMap.INSTANCE.evict();
+        assertEquals(evicted, ReconnectableMap.INSTANCE.evictionStats().orphaned());
+    }
+
+    @Test
+    public void oldest_idle_channels_are_evicted_over_the_limit() throws Exception {
+        RestartableId key1 = RestartableId.next();
+        RestartableId key2 = RestartableId.next();
+        long evicted = ReconnectableMap.INSTANCE.evictionStats().overflow();
+        ReconnectableMap.INSTANCE.setEvictionPolicy(Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.MILLISECONDS, 1);
+
+        ReconnectableMap.INSTANCE.channel(key1, DeliveryMethod.LATEST, factory(PublishSubject.<Integer>create()))
+            .subscribe(new TestSubscriber<Notification<Integer>>())
+            .unsubscribe();
+        Thread.sleep(1);
+        ReconnectableMap.INSTANCE.channel(key2, DeliveryMethod.LATEST, factory(PublishSubject.<Integer>create()))
+            .subscribe(new TestSubscriber<Notification<Integer>>())
+            .unsubscribe();
+
+        assertFalse(ReconnectableMap.INSTANCE.keys().contains(key1));
+        assertTrue(ReconnectableMap.INSTANCE.keys().contains(key2));
+        assertEquals(evicted + 1, ReconnectableMap.INSTANCE.evictionStats().overflow());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ReconnectableMap.INSTANCE.setEvictionPolicy(Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.MINUTES, Integer.MAX_VALUE);
+        for (RestartableId key : ReconnectableMap.INSTANCE.keys())
+            ReconnectableMap.INSTANCE.dismiss(key);
+    }
+
+    private static <T> Func0<Observable<T>> counting(final Observable<T> observable, final AtomicInteger launches) {
+        return new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                launches.incrementAndGet();
+                return observable;
+            }
+        };
+    }
+
+    private static <T> Func0<Observable<T>> factory(final Observable<T> observable) {
+        return new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                return observable;
+            }
+        };
+    }
+
+    private static void awaitCompletion() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (ReconnectableMap.INSTANCE.keys().size() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(0, ReconnectableMap.INSTANCE.keys().size());
+    }
+
+    private interface Worker {
+        void run(int thread, Random random);
+    }
+
+    private static void runConcurrently(final Worker worker) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                        worker.run(thread, new Random(thread));
+                    }
+                    catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertNull(error.get());
+    }
+}
@@ -0,0 +1,49 @@
+package satellite;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import valuemap.ValueMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RestartableIdTest {
+
+    @Test
+    public void test_equals() throws Exception {
+        RestartableId id = RestartableId.next();
+        RestartableId copy = new RestartableId(id.nonce, id.sequence);
+        assertEquals(id, copy);
+        assertEquals(id.hashCode(), copy.hashCode());
+        assertNotEquals(id, RestartableId.next());
+        assertNotEquals(id, new RestartableId(id.nonce + 1, id.sequence));
+    }
+
+    @Test
+    public void next_is_unique() throws Exception {
+        HashSet<RestartableId> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++)
+            ids.add(RestartableId.next());
+        assertEquals(1000, ids.size());
+    }
+
+    @Test
+    public void restored_state_without_a_key_gets_a_new_key() throws Exception {
+        ValueMap state = ValueMap.map("restore", true, "key", "old");
+        ValueMap.Builder out1 = state.toBuilder();
+        ValueMap.Builder out2 = state.toBuilder();
+        new Restartable(state, out1);
+        new Restartable(state, out2);
+
+        RestartableId key1 = Restartable.restoredKey(out1.build());
+        RestartableId key2 = Restartable.restoredKey(out2.build());
+        assertNull(Restartable.restoredKey(state));
+        assertNotNull(key1);
+        assertNotEquals(key1, key2);
+        assertEquals(key1, Restartable.restoredKey(out1.build()));
+    }
+}
@@ -7,8 +7,10 @@ import org.robolectric.ParameterizedRobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import info.android15.satellite.BuildConfig;
@@ -18,9 +20,12 @@ import rx.Subscription;
 import rx.functions.Func1;
 import rx.observers.TestSubscriber;
 import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
 import valuemap.ValueMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static rx.Observable.interval;
 
 @RunWith(ParameterizedRobolectricTestRunner.class)
@@ -93,6 +98,43 @@ public class RestartableSetTest {
         verifyNoLeakedObservables();
     }
 
+    @Test
+    public void test_dismiss_restored() throws Exception {
+        ValueMap.Builder builder = ValueMap.builder();
+        RestartableSet set1 = new RestartableSet(builder);
+        Subscription subscription = subscribeRestartable(method, subscriber1, scheduler, set1);
+        launch(set1);
+        subscription.unsubscribe();
+        assertEquals(1, ReconnectableMap.INSTANCE.keys().size());
+
+        new RestartableSet(builder.build(), builder).dismiss();
+
+        advanceEmission();
+        subscriber1.assertNoValues();
+        assertEquals(0, ReconnectableMap.INSTANCE.keys().size());
+        assertFalse(((ValueMap)builder.build().get(Integer.toString(RESTARTABLE_ID))).containsKey("restore"));
+    }
+
+    @Test
+    public void test_dismiss_restored_id() throws Exception {
+        ValueMap.Builder builder = ValueMap.builder();
+        RestartableSet set1 = new RestartableSet(builder);
+        Subscription subscription = subscribeRestartable(method, subscriber1, scheduler, set1);
+        launch(set1);
+        subscription.unsubscribe();
+
+        RestartableSet set = new RestartableSet(builder.build(), builder);
+        set.dismiss(RESTARTABLE_ID);
+        assertEquals(0, ReconnectableMap.INSTANCE.keys().size());
+        assertFalse(((ValueMap)builder.build().get(Integer.toString(RESTARTABLE_ID))).containsKey("restore"));
+
+        subscribeRestartable(method, subscriber2, scheduler, set);
+        advanceEmission();
+        subscriber1.assertNoValues();
+        subscriber2.assertNoValues();
+        assertEquals(0, ReconnectableMap.INSTANCE.keys().size());
+    }
+
     @Test
     public void test_reconnect() throws Exception {
         ValueMap.Builder builder = ValueMap.builder();
@@ -193,6 +235,120 @@ public class RestartableSetTest {
         verifyNoLeakedObservables();
     }
 
+    @Test
+    public void test_transaction() throws Exception {
+        ValueMap.Builder builder = ValueMap.builder();
+        RestartableSet set = restartableSet(method, builder, subscriber1, scheduler);
+        set.launch(RESTARTABLE_ID + 1);
+
+        final ArrayList<ValueMap> states = new ArrayList<>();
+        final ValueMap.Builder out = builder;
+        set.channel(RESTARTABLE_ID + 2, DeliveryMethod.PUBLISH, new ObservableFactoryNoArg<Long>() {
+            @Override
+            public Observable<Long> call() {
+                states.add(out.build());
+                return Observable.never();
+            }
+        }).subscribe();
+
+        RestartableSet.Transaction transaction = set.transaction()
+            .dismiss(RESTARTABLE_ID)
+            .launch(RESTARTABLE_ID + 2)
+            .dismiss(RESTARTABLE_ID + 1);
+        if (noArg)
+            transaction.launch(RESTARTABLE_ID);
+        else
+            transaction.launch(RESTARTABLE_ID, "0");
+        transaction.commit();
+
+        assertEquals(1, states.size());
+        assertEquals(true, ((ValueMap)states.get(0).get(Integer.toString(RESTARTABLE_ID))).get("restore"));
+        assertEquals(null, ((ValueMap)states.get(0).get(Integer.toString(RESTARTABLE_ID + 1))).get("restore"));
+
+        advanceEmission();
+        verifyReceived(subscriber1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_transaction_commit_twice() throws Exception {
+        RestartableSet.Transaction transaction = new RestartableSet(ValueMap.builder()).transaction().launch(RESTARTABLE_ID);
+        transaction.commit();
+        transaction.commit();
+    }
+
+    @Test
+    public void test_launch_if_changed() throws Exception {
+        final ArrayList<String> launched = new ArrayList<>();
+        RestartableSet set = new RestartableSet(ValueMap.builder());
+        set.channel(RESTARTABLE_ID, method, new ObservableFactory<ArrayList<String>, Long>() {
+            @Override
+            public Observable<Long> call(ArrayList<String> a) {
+                launched.add(a.get(0));
+                return interval(1, 1, TimeUnit.SECONDS, scheduler);
+            }
+        }).subscribe(subscriber1);
+
+        ArrayList<String> arg = new ArrayList<>(Collections.singletonList("1"));
+        assertTrue(set.launchIfChanged(RESTARTABLE_ID, arg));
+        arg.set(0, "2");
+        assertTrue(set.launchIfChanged(RESTARTABLE_ID, arg));
+        assertFalse(set.launchIfChanged(RESTARTABLE_ID, new ArrayList<>(Collections.singletonList("2"))));
+        assertEquals(Arrays.asList("1", "2"), launched);
+
+        set.dismiss(RESTARTABLE_ID);
+        assertTrue(set.launchIfChanged(RESTARTABLE_ID, arg));
+        assertEquals(Arrays.asList("1", "2", "2"), launched);
+    }
+
+    @Test
+    public void test_launch_if_changed_restored() throws Exception {
+        final ArrayList<String> launched = new ArrayList<>();
+        ObservableFactory<ArrayList<String>, Long> factory = new ObservableFactory<ArrayList<String>, Long>() {
+            @Override
+            public Observable<Long> call(ArrayList<String> a) {
+                launched.add(a.get(0));
+                return interval(1, 1, TimeUnit.SECONDS, scheduler);
+            }
+        };
+        ValueMap.Builder builder = ValueMap.builder();
+        RestartableSet set1 = new RestartableSet(builder);
+        set1.channel(RESTARTABLE_ID, method, factory).subscribe(subscriber1);
+        set1.launch(RESTARTABLE_ID, new ArrayList<>(Collections.singletonList("1")));
+
+        RestartableSet set = new RestartableSet(builder.build(), builder);
+        set.channel(RESTARTABLE_ID, method, factory).subscribe(subscriber2);
+        assertFalse(set.launchIfChanged(RESTARTABLE_ID, new ArrayList<>(Collections.singletonList("1"))));
+        assertTrue(set.launchIfChanged(RESTARTABLE_ID, new ArrayList<>(Collections.singletonList("2"))));
+        assertEquals(Arrays.asList("1", "2"), launched);
+    }
+
+    @Test
+    public void test_batch_channel() throws Exception {
+        final PublishSubject<Long> source = PublishSubject.create();
+        RestartableSet set = new RestartableSet(ValueMap.builder());
+        TestSubscriber<List<Notification<Long>>> subscriber = new TestSubscriber<>();
+        set.batchChannel(RESTARTABLE_ID, method, 2, 1, TimeUnit.HOURS, new ObservableFactoryNoArg<Long>() {
+            @Override
+            public Observable<Long> call() {
+                return source;
+            }
+        }).subscribe(subscriber);
+        set.launch(RESTARTABLE_ID);
+
+        RuntimeException exception = new RuntimeException();
+        source.onNext(1L);
+        source.onNext(2L);
+        source.onNext(3L);
+        source.onError(exception);
+
+        List<Notification<Long>> batch1 = Arrays.asList(Notification.createOnNext(1L), Notification.createOnNext(2L));
+        List<Notification<Long>> batch2 = Arrays.asList(Notification.createOnNext(3L), Notification.<Long>createOnError(exception));
+        if (method == DeliveryMethod.SINGLE)
+            subscriber.assertReceivedOnNext(Collections.singletonList(batch1));
+        else
+            subscriber.assertReceivedOnNext(Arrays.asList(batch1, batch2));
+    }
+
     private void launch(RestartableSet set) {
         if (noArg)
             set.launch(RESTARTABLE_ID);
@@ -201,7 +357,7 @@ public class RestartableSetTest {
     }
 
     private void clearBackgroundObservables() {
-        for (String key : ReconnectableMap.INSTANCE.keys())
+        for (RestartableId key : ReconnectableMap.INSTANCE.keys())
             ReconnectableMap.INSTANCE.dismiss(key);
     }
 
@@ -0,0 +1,152 @@
+package satellite;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import valuemap.Codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class ResultCacheTest {
+
+    private final TestScheduler clock = new TestScheduler();
+    private final ArrayList<String> launches = new ArrayList<>();
+
+    private final ObservableFactory<String, ArrayList<String>> factory = new ObservableFactory<String, ArrayList<String>>() {
+        @Override
+        public Observable<ArrayList<String>> call(String arg) {
+            launches.add(arg);
+            return Observable.just(new ArrayList<>(Arrays.asList(arg, "1")), new ArrayList<>(Arrays.asList(arg, "2")));
+        }
+    };
+
+    @Test
+    public void replays_completed_result() throws Exception {
+        ResultCache cache = cache(10, 1000);
+        ObservableFactory<String, ArrayList<String>> cached = cache.cached(factory);
+
+        TestSubscriber<ArrayList<String>> subscriber1 = subscribe(cached, "a");
+        TestSubscriber<ArrayList<String>> subscriber2 = subscribe(cached, "a");
+        subscribe(cached, "b");
+
+        assertEquals(Arrays.asList("a", "b"), launches);
+        subscriber2.assertReceivedOnNext(subscriber1.getOnNextEvents());
+        subscriber2.assertCompleted();
+        assertNotSame(subscriber1.getOnNextEvents().get(0), subscriber2.getOnNextEvents().get(0));
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+        assertEquals(2, cache.stats().size());
+    }
+
+    @Test
+    public void differently_configured_factories_do_not_collide() throws Exception {
+        ResultCache cache = cache(10, 1000);
+        ObservableFactory<String, String> cached1 = cache.cached("prefix1", new Prefix("1:"));
+        ObservableFactory<String, String> cached2 = cache.cached("prefix2", new Prefix("2:"));
+
+        TestSubscriber<String> subscriber1 = new TestSubscriber<>();
+        cached1.call("a").subscribe(subscriber1);
+        TestSubscriber<String> subscriber2 = new TestSubscriber<>();
+        cached2.call("a").subscribe(subscriber2);
+        TestSubscriber<String> subscriber3 = new TestSubscriber<>();
+        cache.cached("prefix1", new Prefix("1:")).call("a").subscribe(subscriber3);
+
+        subscriber1.assertReceivedOnNext(Arrays.asList("1:a"));
+        subscriber2.assertReceivedOnNext(Arrays.asList("2:a"));
+        subscriber3.assertReceivedOnNext(Arrays.asList("1:a"));
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().size());
+    }
+
+    @Test
+    public void does_not_cache_errors() throws Exception {
+        ResultCache cache = cache(10, 1000);
+        ObservableFactoryNoArg<String> cached = cache.cached(new ObservableFactoryNoArg<String>() {
+            @Override
+            public Observable<String> call() {
+                launches.add(null);
+                return Observable.error(new RuntimeException());
+            }
+        });
+
+        cached.call().subscribe(new TestSubscriber<String>());
+        cached.call().subscribe(new TestSubscriber<String>());
+        assertEquals(2, launches.size());
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    public void expires_results() throws Exception {
+        ObservableFactory<String, ArrayList<String>> cached = cache(10, 1000).cached(factory);
+
+        subscribe(cached, "a");
+        clock.advanceTimeBy(59, TimeUnit.SECONDS);
+        subscribe(cached, "a");
+        assertEquals(1, launches.size());
+
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        subscribe(cached, "a");
+        assertEquals(2, launches.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_sub_millisecond_ttl() throws Exception {
+        new ResultCache(500, TimeUnit.MICROSECONDS, 10, 1000, Codec.BINARY, clock);
+    }
+
+    @Test
+    public void evicts_least_recently_used_entries() throws Exception {
+        ResultCache cache = cache(2, 1000);
+        ObservableFactory<String, ArrayList<String>> cached = cache.cached(factory);
+
+        subscribe(cached, "a");
+        subscribe(cached, "b");
+        subscribe(cached, "a");
+        subscribe(cached, "c");
+        assertEquals(1, cache.stats().evictions());
+
+        subscribe(cached, "a");
+        subscribe(cached, "b");
+        assertEquals(Arrays.asList("a", "b", "c", "b"), launches);
+    }
+
+    @Test
+    public void limits_bytes() throws Exception {
+        ResultCache cache = cache(10, 1);
+        subscribe(cache.cached(factory), "a");
+        subscribe(cache.cached(factory), "a");
+        assertEquals(2, launches.size());
+        assertEquals(0, cache.stats().bytes());
+    }
+
+    private static class Prefix implements ObservableFactory<String, String> {
+
+        final String prefix;
+
+        Prefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Observable<String> call(String arg) {
+            return Observable.just(prefix + arg);
+        }
+    }
+
+    private ResultCache cache(int maxEntries, long maxBytes) {
+        return new ResultCache(1, TimeUnit.MINUTES, maxEntries, maxBytes, Codec.BINARY, clock);
+    }
+
+    private TestSubscriber<ArrayList<String>> subscribe(ObservableFactory<String, ArrayList<String>> factory, String arg) {
+        TestSubscriber<ArrayList<String>> subscriber = new TestSubscriber<>();
+        factory.call(arg).subscribe(subscriber);
+        return subscriber;
+    }
+}
@@ -3,10 +3,16 @@ package satellite;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import rx.Notification;
 import rx.exceptions.OnErrorNotImplementedException;
 import rx.functions.Action1;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -44,6 +50,34 @@ public class RxNotificationTest {
         verifyNoMoreInteractions(onNext, onError);
     }
 
+    @Test
+    public void testSplitBatch() throws Exception {
+        final ArrayList<Object> calls = new ArrayList<>();
+        Action1<List<Notification<Integer>>> split = RxNotification.splitBatch(
+            new Action1<List<Integer>>() {
+                @Override
+                public void call(List<Integer> values) {
+                    calls.add(values);
+                }
+            },
+            new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    calls.add(throwable);
+                }
+            });
+
+        RuntimeException exception = new RuntimeException();
+        split.call(Arrays.asList(Notification.createOnNext(1), Notification.createOnNext(2)));
+        split.call(Collections.singletonList(Notification.<Integer>createOnError(exception)));
+        assertEquals(Arrays.<Object>asList(Arrays.asList(1, 2), exception), calls);
+    }
+
+    @Test(expected = OnErrorNotImplementedException.class)
+    public void testSplitBatchOnErrorNotImplemented() throws Exception {
+        RxNotification.<Integer>splitBatch(null, null).call(Collections.singletonList(Notification.<Integer>createOnError(new Exception())));
+    }
+
     @Test
     public void testNull() throws Exception {
         Action1<Notification<Integer>> split = RxNotification.split(null, null);
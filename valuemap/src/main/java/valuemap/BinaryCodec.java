@@ -0,0 +1,652 @@
+package valuemap;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary {@link Codec}.
+ *
+ * Every value starts with a one-byte type tag. Integral numbers are written as zigzag varints,
+ * strings and arrays are prefixed with their varint length. {@link Parcelable} values go through
+ * {@link Parcel}, other {@link Serializable} values go through Java serialization.
+ *
+ * Values are read back as {@link Parcel#readValue(ClassLoader)} would return them. Types that have
+ * no compact form here and are not written by {@link Parcel#writeValue(Object)} as {@link Serializable}
+ * (non-String {@link CharSequence}, typed {@link Parcelable} and {@link CharSequence} arrays,
+ * {@link android.util.SparseArray}, {@link android.os.IBinder} and so on) are delegated to
+ * {@link Parcel#writeValue(Object)}.
+ */
+class BinaryCodec implements Codec {
+
+    private static final ClassLoader CLASS_LOADER = BinaryCodec.class.getClassLoader();
+
+    private static final int MAX_CACHED_BUFFER = 64 * 1024;
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte INTEGER = 2;
+    static final byte LONG = 3;
+    static final byte TRUE = 4;
+    static final byte FALSE = 5;
+    static final byte SHORT = 6;
+    static final byte BYTE = 7;
+    static final byte CHARACTER = 8;
+    static final byte FLOAT = 9;
+    static final byte DOUBLE = 10;
+    static final byte BIG_INTEGER = 11;
+    static final byte BIG_DECIMAL = 12;
+    static final byte VALUE_MAP = 13;
+    static final byte MAP = 14;
+    static final byte LIST = 15;
+    static final byte OBJECT_ARRAY = 16;
+    static final byte STRING_ARRAY = 17;
+    static final byte BYTE_ARRAY = 18;
+    static final byte INT_ARRAY = 19;
+    static final byte LONG_ARRAY = 20;
+    static final byte BOOLEAN_ARRAY = 21;
+    static final byte CHAR_ARRAY = 22;
+    static final byte FLOAT_ARRAY = 23;
+    static final byte DOUBLE_ARRAY = 24;
+    static final byte PARCELABLE = 25;
+    static final byte SERIALIZABLE = 26;
+    static final byte MARSHALLED = 27;
+    static final byte PARCEL_VALUE = 28;
+
+    private static final ThreadLocal<Output> OUTPUT = new ThreadLocal<>();
+
+    @Override
+    public byte[] marshall(Object value) {
+        Output cached = OUTPUT.get();
+        Output out = cached != null ? cached : new Output();
+        OUTPUT.set(null); // a nested marshall call (e.g. from writeToParcel) gets its own buffer
+        try {
+            out.writeValue(value);
+            return out.toByteArray();
+        }
+        finally {
+            out.position = 0;
+            if (out.buffer.length <= MAX_CACHED_BUFFER)
+                OUTPUT.set(out);
+        }
+    }
+
+    @Override
+    public <T> T unmarshall(byte[] array) {
+        return (T)new Input(array).readValue();
+    }
+
+    static class Output {
+
+        byte[] buffer = new byte[256];
+        int position;
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        void writeValue(Object value) {
+            if (value == null)
+                writeByte(NULL);
+            else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String)value);
+            }
+            else if (value instanceof Integer) {
+                writeByte(INTEGER);
+                writeVarInt(zigzag((Integer)value));
+            }
+            else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarLong(zigzag((Long)value));
+            }
+            else if (value instanceof Boolean)
+                writeByte((Boolean)value ? TRUE : FALSE);
+            else if (value instanceof ValueMap) {
+                writeByte(VALUE_MAP);
+                writeValueMap((ValueMap)value);
+            }
+            else if (value instanceof Map) {
+                writeByte(MAP);
+                Map<?, ?> map = (Map<?, ?>)value;
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            }
+            else if (value instanceof List) {
+                writeByte(LIST);
+                List<?> list = (List<?>)value;
+                writeVarInt(list.size());
+                for (Object item : list)
+                    writeValue(item);
+            }
+            else if (value instanceof Parcelable) {
+                writeByte(PARCELABLE);
+                writeParcelable((Parcelable)value);
+            }
+            else if (value instanceof CharSequence) {
+                writeByte(PARCEL_VALUE);
+                writeParcelValue(value);
+            }
+            else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeVarInt(zigzag((Short)value));
+            }
+            else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte)value);
+            }
+            else if (value instanceof Character) {
+                writeByte(CHARACTER);
+                writeVarInt((Character)value);
+            }
+            else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeFixedInt(Float.floatToRawIntBits((Float)value));
+            }
+            else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeFixedLong(Double.doubleToRawLongBits((Double)value));
+            }
+            else if (value instanceof BigInteger) {
+                writeByte(BIG_INTEGER);
+                writeBytes(((BigInteger)value).toByteArray());
+            }
+            else if (value instanceof BigDecimal) {
+                writeByte(BIG_DECIMAL);
+                writeBytes(((BigDecimal)value).unscaledValue().toByteArray());
+                writeVarInt(zigzag(((BigDecimal)value).scale()));
+            }
+            else if (value instanceof Parcelable[] || (value instanceof CharSequence[] && !(value instanceof String[]))) {
+                writeByte(PARCEL_VALUE);
+                writeParcelValue(value);
+            }
+            else if (value instanceof Object[]) {
+                Object[] array = (Object[])value;
+                boolean strings = value instanceof String[];
+                writeByte(strings ? STRING_ARRAY : OBJECT_ARRAY);
+                writeVarInt(array.length);
+                for (Object item : array) {
+                    if (strings)
+                        writeNullableString((String)item);
+                    else
+                        writeValue(item);
+                }
+            }
+            else if (value instanceof byte[]) {
+                writeByte(BYTE_ARRAY);
+                writeBytes((byte[])value);
+            }
+            else if (value instanceof int[]) {
+                writeByte(INT_ARRAY);
+                int[] array = (int[])value;
+                writeVarInt(array.length);
+                for (int item : array)
+                    writeVarInt(zigzag(item));
+            }
+            else if (value instanceof long[]) {
+                writeByte(LONG_ARRAY);
+                long[] array = (long[])value;
+                writeVarInt(array.length);
+                for (long item : array)
+                    writeVarLong(zigzag(item));
+            }
+            else if (value instanceof boolean[]) {
+                writeByte(BOOLEAN_ARRAY);
+                boolean[] array = (boolean[])value;
+                writeVarInt(array.length);
+                for (boolean item : array)
+                    writeByte(item ? 1 : 0);
+            }
+            else if (value instanceof char[]) {
+                writeByte(CHAR_ARRAY);
+                char[] array = (char[])value;
+                writeVarInt(array.length);
+                for (char item : array)
+                    writeVarInt(item);
+            }
+            else if (value instanceof float[]) {
+                writeByte(FLOAT_ARRAY);
+                float[] array = (float[])value;
+                writeVarInt(array.length);
+                for (float item : array)
+                    writeFixedInt(Float.floatToRawIntBits(item));
+            }
+            else if (value instanceof double[]) {
+                writeByte(DOUBLE_ARRAY);
+                double[] array = (double[])value;
+                writeVarInt(array.length);
+                for (double item : array)
+                    writeFixedLong(Double.doubleToRawLongBits(item));
+            }
+            else if (value instanceof Serializable) {
+                writeByte(SERIALIZABLE);
+                writeSerializable((Serializable)value);
+            }
+            else {
+                writeByte(PARCEL_VALUE);
+                writeParcelValue(value);
+            }
+        }
+
+        void writeValueMap(ValueMap map) {
+            writeVarInt(map.keys().size());
+            for (String key : map.keys()) {
+                writeNullableString(key);
+                Object value = map.raw(key);
+                if (value instanceof byte[]) {
+                    writeByte(MARSHALLED);
+                    writeBytes((byte[])value);
+                }
+                else
+                    writeValue(value);
+            }
+        }
+
+        void writeParcelable(Parcelable value) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeParcelable(value, 0);
+                writeBytes(parcel.marshall());
+            }
+            finally {
+                parcel.recycle();
+            }
+        }
+
+        void writeParcelValue(Object value) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeValue(value);
+                writeBytes(parcel.marshall());
+            }
+            catch (RuntimeException e) {
+                throw new IllegalArgumentException("Unable to marshall value: " + value.getClass().getName(), e);
+            }
+            finally {
+                parcel.recycle();
+            }
+        }
+
+        void writeSerializable(Serializable value) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream stream = new ObjectOutputStream(bytes);
+                stream.writeObject(value);
+                stream.close();
+                writeBytes(bytes.toByteArray());
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException("Unable to marshall value: " + value.getClass().getName(), e);
+            }
+        }
+
+        void writeNullableString(String value) {
+            if (value == null)
+                writeVarInt(0);
+            else {
+                writeVarInt(value.length() + 1);
+                writeChars(value);
+            }
+        }
+
+        void writeString(String value) {
+            writeVarInt(value.length());
+            writeChars(value);
+        }
+
+        private void writeChars(String value) {
+            int length = value.length();
+            ensureCapacity(length * 3);
+            byte[] buffer = this.buffer;
+            int position = this.position;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80)
+                    buffer[position++] = (byte)c;
+                else if (c < 0x4000) {
+                    buffer[position++] = (byte)(c | 0x80);
+                    buffer[position++] = (byte)(c >>> 7);
+                }
+                else {
+                    buffer[position++] = (byte)(c | 0x80);
+                    buffer[position++] = (byte)((c >>> 7) | 0x80);
+                    buffer[position++] = (byte)(c >>> 14);
+                }
+            }
+            this.position = position;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte)value;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7f) != 0) {
+                buffer[position++] = (byte)((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte)value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                buffer[position++] = (byte)((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte)value;
+        }
+
+        void writeFixedInt(int value) {
+            ensureCapacity(4);
+            buffer[position++] = (byte)value;
+            buffer[position++] = (byte)(value >>> 8);
+            buffer[position++] = (byte)(value >>> 16);
+            buffer[position++] = (byte)(value >>> 24);
+        }
+
+        void writeFixedLong(long value) {
+            writeFixedInt((int)value);
+            writeFixedInt((int)(value >>> 32));
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+
+        private static int zigzag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    static class Input {
+
+        final byte[] buffer;
+        int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        Object readValue() {
+            byte tag = buffer[position++];
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString(readVarInt());
+                case INTEGER:
+                    return unzigzag(readVarInt());
+                case LONG:
+                    return unzigzag(readVarLong());
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case SHORT:
+                    return (short)unzigzag(readVarInt());
+                case BYTE:
+                    return buffer[position++];
+                case CHARACTER:
+                    return (char)readVarInt();
+                case FLOAT:
+                    return Float.intBitsToFloat(readFixedInt());
+                case DOUBLE:
+                    return Double.longBitsToDouble(readFixedLong());
+                case BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case BIG_DECIMAL:
+                    return new BigDecimal(new BigInteger(readBytes()), unzigzag(readVarInt()));
+                case VALUE_MAP:
+                    return readValueMap();
+                case MAP: {
+                    int size = readVarInt();
+                    HashMap<Object, Object> map = new HashMap<>(size * 4 / 3 + 1);
+                    for (int i = 0; i < size; i++)
+                        map.put(readValue(), readValue());
+                    return map;
+                }
+                case LIST: {
+                    int size = readVarInt();
+                    ArrayList<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++)
+                        list.add(readValue());
+                    return list;
+                }
+                case OBJECT_ARRAY: {
+                    Object[] array = new Object[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = readValue();
+                    return array;
+                }
+                case STRING_ARRAY: {
+                    String[] array = new String[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = readNullableString();
+                    return array;
+                }
+                case BYTE_ARRAY:
+                    return readBytes();
+                case INT_ARRAY: {
+                    int[] array = new int[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = unzigzag(readVarInt());
+                    return array;
+                }
+                case LONG_ARRAY: {
+                    long[] array = new long[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = unzigzag(readVarLong());
+                    return array;
+                }
+                case BOOLEAN_ARRAY: {
+                    boolean[] array = new boolean[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = buffer[position++] != 0;
+                    return array;
+                }
+                case CHAR_ARRAY: {
+                    char[] array = new char[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = (char)readVarInt();
+                    return array;
+                }
+                case FLOAT_ARRAY: {
+                    float[] array = new float[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = Float.intBitsToFloat(readFixedInt());
+                    return array;
+                }
+                case DOUBLE_ARRAY: {
+                    double[] array = new double[readVarInt()];
+                    for (int i = 0; i < array.length; i++)
+                        array[i] = Double.longBitsToDouble(readFixedLong());
+                    return array;
+                }
+                case PARCELABLE:
+                    return readParcelable();
+                case SERIALIZABLE:
+                    return readSerializable();
+                case PARCEL_VALUE:
+                    return readParcelValue();
+                default:
+                    throw new IllegalArgumentException("Unknown type tag: " + tag);
+            }
+        }
+
+        ValueMap readValueMap() {
+            int size = readVarInt();
+            HashMap<String, Object> map = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                String key = readNullableString();
+                if (buffer[position] == MARSHALLED) {
+                    position++;
+                    map.put(key, readBytes());
+                }
+                else
+                    map.put(key, readValue());
+            }
+            return new ValueMap(map);
+        }
+
+        Parcelable readParcelable() {
+            byte[] bytes = readBytes();
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.unmarshall(bytes, 0, bytes.length);
+                parcel.setDataPosition(0);
+                return parcel.readParcelable(CLASS_LOADER);
+            }
+            finally {
+                parcel.recycle();
+            }
+        }
+
+        Object readParcelValue() {
+            byte[] bytes = readBytes();
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.unmarshall(bytes, 0, bytes.length);
+                parcel.setDataPosition(0);
+                return parcel.readValue(CLASS_LOADER);
+            }
+            finally {
+                parcel.recycle();
+            }
+        }
+
+        Object readSerializable() {
+            byte[] bytes = readBytes();
+            try {
+                ObjectInputStream stream = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes));
+                Object value = stream.readObject();
+                stream.close();
+                return value;
+            }
+            catch (IOException | ClassNotFoundException e) {
+                throw new IllegalArgumentException("Unable to unmarshall value", e);
+            }
+        }
+
+        String readNullableString() {
+            int length = readVarInt();
+            return length == 0 ? null : readString(length - 1);
+        }
+
+        String readString(int length) {
+            char[] chars = new char[length];
+            byte[] buffer = this.buffer;
+            int position = this.position;
+            for (int i = 0; i < length; i++) {
+                int b = buffer[position++];
+                if (b >= 0)
+                    chars[i] = (char)b;
+                else {
+                    int c = b & 0x7f;
+                    b = buffer[position++];
+                    c |= (b & 0x7f) << 7;
+                    if (b < 0)
+                        c |= (buffer[position++] & 0x7f) << 14;
+                    chars[i] = (char)c;
+                }
+            }
+            this.position = position;
+            return new String(chars);
+        }
+
+        byte[] readBytes() {
+            int length = readVarInt();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        int readVarInt() {
+            int result = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                result |= (b & 0x7f) << shift;
+                if (b >= 0)
+                    return result;
+            }
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                result |= (long)(b & 0x7f) << shift;
+                if (b >= 0)
+                    return result;
+            }
+        }
+
+        int readFixedInt() {
+            return (buffer[position++] & 0xff) |
+                (buffer[position++] & 0xff) << 8 |
+                (buffer[position++] & 0xff) << 16 |
+                (buffer[position++] & 0xff) << 24;
+        }
+
+        long readFixedLong() {
+            return (readFixedInt() & 0xffffffffL) | ((long)readFixedInt() << 32);
+        }
+
+        private static int unzigzag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, CLASS_LOADER);
+            }
+            catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
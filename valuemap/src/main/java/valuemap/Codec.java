@@ -0,0 +1,44 @@
+package valuemap;
+
+/**
+ * {@link Codec} converts values which are not immutable into byte arrays and back.
+ * {@link ValueMap} uses it to keep a private copy of every mutable value that has been put into it.
+ *
+ * A codec can be replaced with {@link ValueMap#setCodec(Codec)}.
+ * Note that data which has been marshalled by one codec can not be unmarshalled by another one,
+ * so the codec should be set once, before any {@link ValueMap} is created.
+ */
+public interface Codec {
+
+    /**
+     * The default codec. It writes basic Java types, arrays, lists and maps into a compact binary form
+     * without touching {@link android.os.Parcel}. {@link android.os.Parcelable} and
+     * {@link java.io.Serializable} values are supported as well. Values come back with the same types
+     * {@link android.os.Parcel#readValue(ClassLoader)} returns, other types are delegated to
+     * {@link android.os.Parcel#writeValue(Object)}.
+     */
+    Codec BINARY = new BinaryCodec();
+
+    /**
+     * A codec which uses {@link android.os.Parcel#writeValue(Object)} and
+     * {@link android.os.Parcel#readValue(ClassLoader)}.
+     */
+    Codec PARCEL = new ParcelCodec();
+
+    /**
+     * Converts a value into a byte array.
+     *
+     * @param value a value to marshall. It must satisfy {@link android.os.Parcel#writeValue(Object)}
+     *              method requirements.
+     * @return a byte array.
+     */
+    byte[] marshall(Object value);
+
+    /**
+     * Converts a byte array that has been produced by {@link #marshall(Object)} into a new instance of the value.
+     *
+     * @param array a byte array.
+     * @return a new instance of the marshalled value.
+     */
+    <T> T unmarshall(byte[] array);
+}
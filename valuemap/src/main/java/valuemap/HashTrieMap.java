@@ -0,0 +1,358 @@
+package valuemap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash array mapped trie.
+ *
+ * {@link #plus(String, Object)} and {@link #minus(String)} return a new map which shares all
+ * unchanged nodes with the original one, so an update costs O(log32(size)) instead of a full copy.
+ */
+final class HashTrieMap extends AbstractMap<String, Object> {
+
+    static final HashTrieMap EMPTY = new HashTrieMap(null, 0);
+
+    private static final Object NULL_KEY = new Object();
+    private static final Object NOT_FOUND = new Object();
+
+    private final Node root;
+    private final int size;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    private HashTrieMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static HashTrieMap from(Map<String, ?> map) {
+        if (map instanceof HashTrieMap)
+            return (HashTrieMap)map;
+        HashTrieMap result = EMPTY;
+        for (Entry<String, ?> entry : map.entrySet())
+            result = result.plus(entry.getKey(), entry.getValue());
+        return result;
+    }
+
+    HashTrieMap plus(String key, Object value) {
+        Object k = key == null ? NULL_KEY : key;
+        boolean[] added = new boolean[1];
+        Node newRoot = (root == null ? BitmapNode.EMPTY : root).plus(0, hash(k), k, value, added);
+        return newRoot == root ? this : new HashTrieMap(newRoot, added[0] ? size + 1 : size);
+    }
+
+    HashTrieMap minus(String key) {
+        if (root == null)
+            return this;
+        Object k = key == null ? NULL_KEY : key;
+        Node newRoot = root.minus(0, hash(k), k);
+        return newRoot == root ? this : new HashTrieMap(newRoot, size - 1);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = find(key);
+        return value == NOT_FOUND ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private Object find(Object key) {
+        if (root == null)
+            return NOT_FOUND;
+        Object k = key == null ? NULL_KEY : key;
+        return root.find(0, hash(k), k);
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A node keeps key-value pairs in a flat array. A pair with a null key refers to a child node.
+     */
+    private abstract static class Node {
+
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node plus(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * Returns the same node if there is no such key, or null if the node becomes empty.
+         */
+        abstract Node minus(int shift, int hash, Object key);
+    }
+
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return NOT_FOUND;
+            int index = index(bit);
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null)
+                return ((Node)v).find(shift + 5, hash, key);
+            return key.equals(k) ? v : NOT_FOUND;
+        }
+
+        @Override
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object k = array[index];
+            Object v = array[index + 1];
+
+            if (k == null) {
+                Node child = ((Node)v).plus(shift + 5, hash, key, value, added);
+                return child == v ? this : with(index + 1, child);
+            }
+
+            if (key.equals(k))
+                return v == value ? this : with(index + 1, value);
+
+            added[0] = true;
+            Node child = node(shift + 5, k, v, hash, key, value);
+            Object[] newArray = array.clone();
+            newArray[index] = null;
+            newArray[index + 1] = child;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+
+            int index = index(bit);
+            Object k = array[index];
+            Object v = array[index + 1];
+
+            if (k == null) {
+                Node child = ((Node)v).minus(shift + 5, hash, key);
+                if (child == v)
+                    return this;
+                if (child != null)
+                    return with(index + 1, child);
+            }
+            else if (!key.equals(k))
+                return this;
+
+            if (bitmap == bit)
+                return null;
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        private BitmapNode with(int index, Object value) {
+            Object[] newArray = array.clone();
+            newArray[index] = value;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) * 2;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private static Node node(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2)
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            boolean[] added = new boolean[1];
+            return EMPTY
+                .plus(shift, hash1, key1, value1, added)
+                .plus(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * Keeps keys which have the same hash.
+     */
+    private static final class CollisionNode extends Node {
+
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index < 0 ? NOT_FOUND : array[index + 1];
+        }
+
+        @Override
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                return new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[]{null, this})
+                    .plus(shift, hash, key, value, added);
+            }
+
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value)
+                    return this;
+                Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            if (index < 0)
+                return this;
+            if (array.length == 2)
+                return null;
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new CollisionNode(hash, newArray);
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i]))
+                    return i;
+            }
+            return -1;
+        }
+    }
+
+    private static final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private final Node[] nodes = new Node[8];
+        private final int[] positions = new int[8];
+        private int depth = -1;
+        private Entry<String, Object> next;
+
+        EntryIterator(Node root) {
+            if (root != null)
+                push(root);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            Entry<String, Object> result = next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void push(Node node) {
+            nodes[++depth] = node;
+            positions[depth] = 0;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = nodes[depth].array;
+                int position = positions[depth];
+                if (position == array.length) {
+                    nodes[depth--] = null;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                Object key = array[position];
+                Object value = array[position + 1];
+                if (key == null)
+                    push((Node)value);
+                else {
+                    next = new SimpleImmutableEntry<>(key == NULL_KEY ? null : (String)key, value);
+                    return;
+                }
+            }
+        }
+    }
+}
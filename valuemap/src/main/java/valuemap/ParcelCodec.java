@@ -0,0 +1,27 @@
+package valuemap;
+
+import android.os.Parcel;
+
+class ParcelCodec implements Codec {
+
+    private static final ClassLoader CLASS_LOADER = ParcelCodec.class.getClassLoader();
+
+    @Override
+    public <T> T unmarshall(byte[] array) {
+        Parcel parcel = Parcel.obtain();
+        parcel.unmarshall(array, 0, array.length);
+        parcel.setDataPosition(0);
+        Object value = parcel.readValue(CLASS_LOADER);
+        parcel.recycle();
+        return (T)value;
+    }
+
+    @Override
+    public byte[] marshall(Object o) {
+        Parcel parcel = Parcel.obtain();
+        parcel.writeValue(o);
+        byte[] result = parcel.marshall();
+        parcel.recycle();
+        return result;
+    }
+}
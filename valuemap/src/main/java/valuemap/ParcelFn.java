@@ -1,25 +1,20 @@
 package valuemap;
 
-import android.os.Parcel;
-
 class ParcelFn {
 
-    private static final ClassLoader CLASS_LOADER = ParcelFn.class.getClassLoader();
+    private static volatile Codec codec = Codec.BINARY;
+
+    static void setCodec(Codec codec) {
+        if (codec == null)
+            throw new NullPointerException("codec");
+        ParcelFn.codec = codec;
+    }
 
     static <T> T unmarshall(byte[] array) {
-        Parcel parcel = Parcel.obtain();
-        parcel.unmarshall(array, 0, array.length);
-        parcel.setDataPosition(0);
-        Object value = parcel.readValue(CLASS_LOADER);
-        parcel.recycle();
-        return (T)value;
+        return codec.unmarshall(array);
     }
 
     static byte[] marshall(Object o) {
-        Parcel parcel = Parcel.obtain();
-        parcel.writeValue(o);
-        byte[] result = parcel.marshall();
-        parcel.recycle();
-        return result;
+        return codec.marshall(o);
     }
 }
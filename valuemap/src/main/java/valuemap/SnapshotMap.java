@@ -0,0 +1,271 @@
+package valuemap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map over a flat snapshot of {@link ValueMap} content which decodes each value on the first access.
+ *
+ * A snapshot starts with a magic number, the snapshot length and the number of entries, followed by an index
+ * of (key hash, entry offset) pairs sorted by the hash. An entry is a key length, UTF-16 key chars, a one-byte
+ * value kind, a value length and value bytes. Immutable values are marshalled with the current {@link Codec}, mutable values are kept
+ * as they are stored in {@link ValueMap}, as marshalled byte arrays, and child {@link ValueMap}s are nested
+ * snapshots. All offsets are relative to the start of the snapshot, so a nested snapshot can be read in place.
+ *
+ * A lookup is a binary search over the index and a comparison of key chars in the buffer,
+ * nothing is decoded besides the requested value.
+ */
+final class SnapshotMap extends AbstractMap<String, Object> {
+
+    private static final int MAGIC = 0x564d5331; // "VMS1"
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private static final byte NULL = 0;
+    private static final byte VALUE = 1;
+    private static final byte BYTES = 2;
+    private static final byte MAP = 3;
+
+    private static final Object NOT_DECODED = new Object();
+
+    /**
+     * A file of a top-level snapshot which has been opened with {@link ValueMap#openSnapshot(File)}, or null.
+     */
+    final File file;
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int size;
+    private final Object[] values; // decoded values are immutable, so racy initialization is fine
+
+    private Set<Entry<String, Object>> entrySet;
+
+    SnapshotMap(ByteBuffer buffer, int base, File file) {
+        if (buffer.limit() - base < HEADER_SIZE || buffer.getInt(base) != MAGIC)
+            throw new IllegalArgumentException("Not a ValueMap snapshot");
+        this.buffer = buffer;
+        this.base = base;
+        this.size = buffer.getInt(base + 8);
+        this.file = file;
+        this.values = new Object[size];
+        Arrays.fill(values, NOT_DECODED);
+    }
+
+    /**
+     * Writes a snapshot of a map in which values are stored the way {@link ValueMap} stores them.
+     */
+    static byte[] write(Map<String, Object> map) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(new DataOutputStream(bytes), map);
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream does not throw
+        }
+    }
+
+    private static void write(DataOutputStream out, Map<String, Object> map) throws IOException {
+        @SuppressWarnings("unchecked")
+        Map.Entry<String, Object>[] entries = map.entrySet().toArray(new Map.Entry[map.size()]);
+        Arrays.sort(entries, new Comparator<Map.Entry<String, Object>>() {
+            @Override
+            public int compare(Map.Entry<String, Object> lhs, Map.Entry<String, Object> rhs) {
+                int l = hash(lhs.getKey());
+                int r = hash(rhs.getKey());
+                return l < r ? -1 : l == r ? 0 : 1;
+            }
+        });
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        int[] offsets = new int[entries.length];
+        int bodyStart = HEADER_SIZE + entries.length * INDEX_ENTRY_SIZE;
+        for (int i = 0; i < entries.length; i++) {
+            offsets[i] = bodyStart + bodyOut.size();
+            String key = entries[i].getKey();
+            Object value = entries[i].getValue();
+            if (key == null)
+                bodyOut.writeInt(-1);
+            else {
+                bodyOut.writeInt(key.length());
+                bodyOut.writeChars(key);
+            }
+            byte[] bytes = value == null ? new byte[0] :
+                value instanceof byte[] ? (byte[])value :
+                    value instanceof ValueMap ? ((ValueMap)value).snapshot() :
+                        ParcelFn.marshall(value);
+            bodyOut.writeByte(value == null ? NULL : value instanceof byte[] ? BYTES : value instanceof ValueMap ? MAP : VALUE);
+            bodyOut.writeInt(bytes.length);
+            bodyOut.write(bytes);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(bodyStart + body.size());
+        out.writeInt(entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            out.writeInt(hash(entries[i].getKey()));
+            out.writeInt(offsets[i]);
+        }
+        body.writeTo(out);
+    }
+
+    /**
+     * Returns a copy of the snapshot bytes.
+     */
+    byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.getInt(base + 4)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(base);
+        source.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (index >= size)
+                                throw new NoSuchElementException();
+                            int i = index++;
+                            return new SimpleImmutableEntry<>(key(i), value(i));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private int indexOf(Object key) {
+        if (key != null && !(key instanceof String))
+            return -1;
+        String k = (String)key;
+        int hash = hash(k);
+
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hashAt(middle) < hash)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        for (int i = low; i < size && hashAt(i) == hash; i++) {
+            if (keyEquals(entryOffset(i), k))
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int offset, String key) {
+        int length = buffer.getInt(offset);
+        if (key == null)
+            return length == -1;
+        if (length != key.length())
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (buffer.getChar(offset + 4 + i * 2) != key.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private String key(int index) {
+        int offset = entryOffset(index);
+        int length = buffer.getInt(offset);
+        if (length == -1)
+            return null;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = buffer.getChar(offset + 4 + i * 2);
+        return new String(chars);
+    }
+
+    private Object value(int index) {
+        Object value = values[index];
+        if (value == NOT_DECODED)
+            values[index] = value = decode(index);
+        return value;
+    }
+
+    private Object decode(int index) {
+        int offset = entryOffset(index);
+        int keyLength = buffer.getInt(offset);
+        offset += 4 + Math.max(keyLength, 0) * 2;
+        byte kind = buffer.get(offset);
+        int length = buffer.getInt(offset + 1);
+        offset += 5;
+        if (kind == NULL)
+            return null;
+        if (kind == MAP)
+            return new ValueMap(new SnapshotMap(buffer, offset, null));
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return kind == BYTES ? bytes : ParcelFn.unmarshall(bytes);
+    }
+
+    private int hashAt(int index) {
+        return buffer.getInt(base + HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+    }
+
+    private int entryOffset(int index) {
+        return base + buffer.getInt(base + HEADER_SIZE + index * INDEX_ENTRY_SIZE + 4);
+    }
+
+    private static int hash(String key) {
+        return key == null ? 0 : key.hashCode();
+    }
+}
@@ -1,14 +1,24 @@
 package valuemap;
 
+import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import static valuemap.ParcelFn.marshall;
 import static valuemap.ParcelFn.unmarshall;
@@ -28,17 +38,35 @@ import static valuemap.ParcelFn.unmarshall;
  * immutable data completely immutable.
  *
  * Every time set/get is called a corresponding
- * {@link Parcel#marshall()}/{@link Parcel#unmarshall(byte[], int, int)} is called,
+ * {@link Codec#marshall(Object)}/{@link Codec#unmarshall(byte[])} is called,
  * providing you with a fresh instance of the stored value.
  * Thus, it is not recommended to use {@link ValueMap} on performance critical application parts.
+ * The default {@link Codec#BINARY} codec does not use {@link Parcel} for basic Java types,
+ * {@link Codec#PARCEL} can be set with {@link #setCodec(Codec)} to marshall values with {@link Parcel}.
  *
  * Basic immutable Java types, BigInteger, BigDecimal and ValueMap are not automatically
  * marshalled/unmarshalled for performance reasons,
  * so you can use them without performance penalty.
+ * More immutable types can be declared with {@link #registerImmutable(Class)}.
+ *
+ * If the same marshalled values are read many times, use {@link #cachingView()}.
+ *
+ * {@link ValueMap} is parcelled as a flat snapshot which is decoded lazily: a restored map decodes
+ * a value and a child {@link ValueMap} only when it is requested. A large state can be kept out of
+ * the {@link Parcel} with {@link #writeSnapshot(File)} and {@link #openSnapshot(File)}: a snapshot map is
+ * parcelled as a path of its file. If the file can not be opened when the map is restored from a {@link Parcel},
+ * for example because it has been deleted, the map is restored empty.
  */
 public class ValueMap implements Parcelable {
 
-    private final Map<String, Object> map;
+    private static final Set<Class<?>> IMMUTABLE = new CopyOnWriteArraySet<>();
+    private static final Object NOT_COPYABLE = new Object();
+
+    private static final int PARCEL_INLINE = 0;
+    private static final int PARCEL_SNAPSHOT = 1;
+
+    private final Map<String, Object> map; // HashTrieMap or SnapshotMap
+    private final ConcurrentHashMap<String, Object> decoded;
 
     public static ValueMap empty() {
         return EMPTY;
@@ -48,6 +76,33 @@ public class ValueMap implements Parcelable {
         return new Builder();
     }
 
+    /**
+     * Declares instances of a given class to be immutable. Such values are not marshalled by
+     * {@link ValueMap} and the same instance is returned on every get call.
+     *
+     * Only instances of exactly this class are affected, subclasses should be registered separately.
+     * The class still has to satisfy {@link Parcel#writeValue(Object)} method requirements to be parcelled.
+     */
+    public static void registerImmutable(Class<?> type) {
+        IMMUTABLE.add(type);
+    }
+
+    /**
+     * Reverts {@link #registerImmutable(Class)}, for tests.
+     */
+    static void unregisterImmutable(Class<?> type) {
+        IMMUTABLE.remove(type);
+    }
+
+    /**
+     * Sets a {@link Codec} that will be used to marshall and unmarshall mutable values.
+     * The codec should be set once, before any {@link ValueMap} is created.
+     * The default codec is {@link Codec#BINARY}.
+     */
+    public static void setCodec(Codec codec) {
+        ParcelFn.setCodec(codec);
+    }
+
     /**
      * Constructs ValueMap using a sequence of key-value arguments.
      * Keys should be String, values should fit {@link Parcel#writeValue(Object)} argument
@@ -64,6 +119,61 @@ public class ValueMap implements Parcelable {
         return builder.build();
     }
 
+    /**
+     * Opens a snapshot that has been written with {@link #writeSnapshot(File)}. The file is memory-mapped
+     * and values are decoded on the first access, so opening a snapshot takes the same time regardless of its size.
+     *
+     * The returned map is written to a {@link Parcel} as the file path, so the file should not be changed
+     * or deleted while the map or its parcelled instance state can be in use. A parcelled map whose file
+     * can not be opened is restored empty.
+     *
+     * @param file a snapshot file.
+     * @return a {@link ValueMap} backed by the snapshot.
+     * @throws IOException if the file can not be read or it is not a snapshot.
+     */
+    public static ValueMap openSnapshot(File file) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        }
+        finally {
+            in.close();
+        }
+        try {
+            return new ValueMap(new SnapshotMap(buffer, 0, file), null);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + file);
+        }
+    }
+
+    /**
+     * Writes a flat snapshot of the map into a file, see {@link #openSnapshot(File)}.
+     * The file is replaced atomically.
+     *
+     * @param file a snapshot file.
+     * @throws IOException if the file can not be written.
+     */
+    public void writeSnapshot(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(snapshot());
+        }
+        finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Can not rename " + temp + " to " + file);
+        }
+    }
+
+    byte[] snapshot() {
+        return map instanceof SnapshotMap ? ((SnapshotMap)map).toByteArray() : SnapshotMap.write(map);
+    }
+
     /**
      * Returns an immutable set of keys contained in this {@link ValueMap}.
      */
@@ -91,31 +201,131 @@ public class ValueMap implements Parcelable {
     public <T> T get(String key, T defaultValue) {
         if (map.containsKey(key)) {
             Object value = map.get(key);
-            return (T)(value instanceof byte[] ? unmarshall((byte[])value) : value);
+            return (T)(value instanceof byte[] ? decode(key, (byte[])value) : value);
         }
         return defaultValue;
     }
 
+    /**
+     * Returns a {@link ValueMap} with the same content which unmarshalls each value only once.
+     *
+     * Every get call on the view still returns a fresh instance of a mutable value, but for
+     * lists, maps, arrays and bundles of immutable values the instance is a copy of the decoded
+     * value instead of a result of another unmarshalling. Values of other types are unmarshalled as usual.
+     */
+    public ValueMap cachingView() {
+        return decoded != null ? this : new ValueMap(map, new ConcurrentHashMap<String, Object>());
+    }
+
+    private Object decode(String key, byte[] value) {
+        if (decoded == null)
+            return unmarshall(value);
+
+        Object cached = decoded.get(key);
+        if (cached == null) {
+            cached = unmarshall(value);
+            decoded.put(key, cached);
+        }
+
+        Object copy = copy(cached);
+        return copy != NOT_COPYABLE ? copy : unmarshall(value);
+    }
+
+    private static Object copy(Object value) {
+        if (isImmutable(value))
+            return value;
+        if (value instanceof String[])
+            return ((String[])value).clone();
+        if (value instanceof int[])
+            return ((int[])value).clone();
+        if (value instanceof long[])
+            return ((long[])value).clone();
+        if (value instanceof byte[])
+            return ((byte[])value).clone();
+        if (value instanceof boolean[])
+            return ((boolean[])value).clone();
+        if (value instanceof char[])
+            return ((char[])value).clone();
+        if (value instanceof float[])
+            return ((float[])value).clone();
+        if (value instanceof double[])
+            return ((double[])value).clone();
+        if (value.getClass() == Object[].class) {
+            Object[] array = ((Object[])value).clone();
+            for (int i = 0; i < array.length; i++) {
+                if ((array[i] = copy(array[i])) == NOT_COPYABLE)
+                    return NOT_COPYABLE;
+            }
+            return array;
+        }
+        if (value.getClass() == ArrayList.class) {
+            ArrayList<?> list = (ArrayList<?>)value;
+            ArrayList<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                Object itemCopy = copy(item);
+                if (itemCopy == NOT_COPYABLE)
+                    return NOT_COPYABLE;
+                copy.add(itemCopy);
+            }
+            return copy;
+        }
+        if (value.getClass() == HashMap.class) {
+            HashMap<?, ?> map = (HashMap<?, ?>)value;
+            HashMap<Object, Object> copy = new HashMap<>(map.size() * 4 / 3 + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object valueCopy = copy(entry.getValue());
+                if (!isImmutable(entry.getKey()) || valueCopy == NOT_COPYABLE)
+                    return NOT_COPYABLE;
+                copy.put(entry.getKey(), valueCopy);
+            }
+            return copy;
+        }
+        if (value.getClass() == Bundle.class) {
+            Bundle bundle = (Bundle)value;
+            for (String key : bundle.keySet()) {
+                if (!isImmutable(bundle.get(key)))
+                    return NOT_COPYABLE;
+            }
+            return new Bundle(bundle);
+        }
+        return NOT_COPYABLE;
+    }
+
+    /**
+     * Returns a value as it is stored in the map: immutable values as is, other values as marshalled byte arrays.
+     */
+    Object raw(String key) {
+        return map.get(key);
+    }
+
     /**
      * Returns a {@link Builder} which contains the current {@link ValueMap} values.
      */
     public Builder toBuilder() {
-        return new Builder(map);
+        return new Builder(HashTrieMap.from(map), null, null);
     }
 
     /**
      * A builder that implements "output only" approach for handling state.
      * It is not recommended to use {@link #build()} just to check what is inside -
      * this will invalidate the whole purpose of using {@link ValueMap}.
+     *
+     * The builder remembers the result of the last {@link #build()} call and only rebuilds
+     * what has been changed since then, so repeated builds of a large unchanged state are cheap.
      */
     public static class Builder {
 
-        private final Map<String, Object> map;
+        private HashTrieMap map;
         private final Map<String, Builder> children;
+        private final Set<String> dirtyChildren;
+
+        private final Builder parent;
+        private final String key;
+
+        private ValueMap built;
 
         public Builder() {
-            this.map = new HashMap<>();
-            this.children = new HashMap<>();
+            this(HashTrieMap.EMPTY, null, null);
         }
 
         /**
@@ -127,7 +337,10 @@ public class ValueMap implements Parcelable {
          * @return the same builder instance.
          */
         public Builder put(String key, Object value) {
-            map.put(key, isImmutable(value) ? value : marshall(value));
+            map = map.plus(key, isImmutable(value) ? value : marshall(value));
+            if (children.containsKey(key))
+                dirtyChildren.add(key);
+            invalidate();
             return this;
         }
 
@@ -138,14 +351,17 @@ public class ValueMap implements Parcelable {
          * @return the same builder instance.
          */
         public Builder remove(String key) {
-            map.remove(key);
+            map = map.minus(key);
             children.remove(key);
+            dirtyChildren.remove(key);
+            invalidate();
             return this;
         }
 
         /**
-         * Returns a child builder. The child builder will be marshalled into a {@link ValueMap}
-         * instance with the key during the {@link #build()} call.
+         * Returns a child builder. The child builder will be built into a {@link ValueMap}
+         * instance with the key during the {@link #build()} call. The child {@link ValueMap} is kept
+         * as is, it gets marshalled only when the parent map is written to a {@link Parcel}.
          *
          * @param key a child builder key.
          * @return a new builder instance or an existing one.
@@ -155,13 +371,17 @@ public class ValueMap implements Parcelable {
                 return children.get(key);
 
             else if (map.containsKey(key)) {
-                Builder builder = ParcelFn.<ValueMap>unmarshall((byte[])map.remove(key)).toBuilder();
+                Object stored = map.get(key);
+                ValueMap value = stored instanceof byte[] ? ParcelFn.<ValueMap>unmarshall((byte[])stored) : (ValueMap)stored;
+                Builder builder = new Builder(HashTrieMap.from(value.map), this, key);
+                builder.built = value;
                 children.put(key, builder);
                 return builder;
             }
 
-            Builder builder = new Builder();
+            Builder builder = new Builder(HashTrieMap.EMPTY, this, key);
             children.put(key, builder);
+            builder.invalidate();
             return builder;
         }
 
@@ -169,15 +389,29 @@ public class ValueMap implements Parcelable {
          * Builds the {@link ValueMap} instance using collected key-value pairs.
          */
         public ValueMap build() {
-            Map<String, Object> map1 = new HashMap<>(this.map);
-            for (Map.Entry<String, Builder> entry : children.entrySet())
-                map1.put(entry.getKey(), marshall(entry.getValue().build()));
-            return new ValueMap(map1);
+            if (built == null) {
+                for (String key : dirtyChildren)
+                    map = map.plus(key, children.get(key).build());
+                dirtyChildren.clear();
+                built = new ValueMap(map);
+            }
+            return built;
         }
 
-        private Builder(Map<String, Object> map) {
-            this.map = new HashMap<>(map);
+        private void invalidate() {
+            built = null;
+            if (parent != null && parent.children.get(key) == this) {
+                parent.dirtyChildren.add(key);
+                parent.invalidate();
+            }
+        }
+
+        private Builder(HashTrieMap map, Builder parent, String key) {
+            this.map = map;
             this.children = new HashMap<>();
+            this.dirtyChildren = new HashSet<>();
+            this.parent = parent;
+            this.key = key;
         }
     }
 
@@ -194,24 +428,46 @@ public class ValueMap implements Parcelable {
             value instanceof Character ||
             value instanceof Short ||
             value instanceof BigDecimal ||
-            value instanceof BigInteger;
+            value instanceof BigInteger ||
+            IMMUTABLE.contains(value.getClass());
     }
 
     ValueMap(Map<String, Object> map) {
-        this.map = Collections.unmodifiableMap(new HashMap<>(map));
+        this(map instanceof SnapshotMap ? map : HashTrieMap.from(map), null);
     }
 
-    private static final ValueMap EMPTY = new ValueMap(Collections.<String, Object>emptyMap());
+    private ValueMap(Map<String, Object> map, ConcurrentHashMap<String, Object> decoded) {
+        this.map = map;
+        this.decoded = decoded;
+    }
 
-    private static final ClassLoader CLASS_LOADER = ValueMap.class.getClassLoader();
+    private static final ValueMap EMPTY = new ValueMap(HashTrieMap.EMPTY);
 
     protected ValueMap(Parcel in) {
-        this.map = Collections.unmodifiableMap(in.readHashMap(CLASS_LOADER));
+        this.map = in.readInt() == PARCEL_SNAPSHOT ? openSnapshotMap(in.readString()) :
+            new SnapshotMap(ByteBuffer.wrap(in.createByteArray()), 0, null);
+        this.decoded = null;
+    }
+
+    private static Map<String, Object> openSnapshotMap(String path) {
+        try {
+            return openSnapshot(new File(path)).map;
+        }
+        catch (IOException e) {
+            return HashTrieMap.EMPTY;
+        }
     }
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeMap(map);
+        if (map instanceof SnapshotMap && ((SnapshotMap)map).file != null) {
+            dest.writeInt(PARCEL_SNAPSHOT);
+            dest.writeString(((SnapshotMap)map).file.getPath());
+        }
+        else {
+            dest.writeInt(PARCEL_INLINE);
+            dest.writeByteArray(snapshot());
+        }
     }
 
     @Override
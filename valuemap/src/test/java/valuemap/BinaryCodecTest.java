@@ -0,0 +1,111 @@
+package valuemap;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.util.Pair;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+import info.android15.valuemap.BuildConfig;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class BinaryCodecTest {
+
+    @Test
+    public void testBasicTypes() throws Exception {
+        for (Object value : Arrays.asList(null, "", "1", "\u0080\u3fff\u4000\uffff", 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            0L, Long.MIN_VALUE, Long.MAX_VALUE, true, false, (short)-5, (byte)-1, 'c', 1.5f, -2.5,
+            new BigInteger("-123456789012345678901234567890"), new BigDecimal("-1234.5678")))
+            assertEquals(value, roundTrip(value));
+    }
+
+    @Test
+    public void testArrays() throws Exception {
+        assertArrayEquals(new byte[]{1, -1}, (byte[])roundTrip(new byte[]{1, -1}));
+        assertArrayEquals(new int[]{1, -1, Integer.MIN_VALUE}, (int[])roundTrip(new int[]{1, -1, Integer.MIN_VALUE}));
+        assertArrayEquals(new long[]{1, -1, Long.MAX_VALUE}, (long[])roundTrip(new long[]{1, -1, Long.MAX_VALUE}));
+        assertArrayEquals(new char[]{'a', '\uffff'}, (char[])roundTrip(new char[]{'a', '\uffff'}));
+        assertArrayEquals(new double[]{1.5, -1}, (double[])roundTrip(new double[]{1.5, -1}), 0);
+        assertArrayEquals(new float[]{1.5f, -1}, (float[])roundTrip(new float[]{1.5f, -1}), 0);
+        assertTrue(Arrays.equals(new boolean[]{true, false}, (boolean[])roundTrip(new boolean[]{true, false})));
+        assertArrayEquals(new String[]{"1", null}, (String[])roundTrip(new String[]{"1", null}));
+        assertArrayEquals(new Object[]{1, "2"}, (Object[])roundTrip(new Object[]{1, "2"}));
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        ArrayList<Object> list = new ArrayList<>();
+        list.add(1);
+        list.add(null);
+        list.add("3");
+        assertEquals(list, roundTrip(list));
+
+        HashMap<Object, Object> map = new HashMap<>();
+        map.put("1", list);
+        map.put(2, null);
+        assertEquals(map, roundTrip(map));
+    }
+
+    @Test
+    public void testValueMap() throws Exception {
+        ValueMap map = ValueMap.map("1", 1, "2", new int[]{2}, "3", ValueMap.map("4", 4));
+        ValueMap result = roundTrip(map);
+        assertEquals(map.keys(), result.keys());
+        assertEquals(1, (int)result.get("1"));
+        assertArrayEquals(new int[]{2}, (int[])result.get("2"));
+        assertEquals(ValueMap.map("4", 4), result.get("3"));
+    }
+
+    @Test
+    public void testParcelable() throws Exception {
+        Bundle bundle = new Bundle();
+        bundle.putString("1", "1");
+        assertEquals("1", ((Bundle)roundTrip(bundle)).getString("1"));
+    }
+
+    @Test
+    public void testParcelableArray() throws Exception {
+        Parcelable[] result = roundTrip(new ValueMap[]{ValueMap.map("1", 1), null});
+        assertEquals(2, result.length);
+        assertEquals(ValueMap.map("1", 1), result[0]);
+        assertNull(result[1]);
+    }
+
+    @Test
+    public void testCharSequence() throws Exception {
+        assertEquals("1", roundTrip(new StringBuilder("1")));
+        CharSequence[] result = roundTrip(new CharSequence[]{"1", new StringBuilder("2"), null});
+        assertArrayEquals(new CharSequence[]{"1", "2", null}, result);
+    }
+
+    @Test
+    public void testSerializable() throws Exception {
+        Date date = new Date(1);
+        assertEquals(date, roundTrip(date));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotMarshallable() throws Exception {
+        Codec.BINARY.marshall(new Pair<>(1, 1));
+    }
+
+    private static <T> T roundTrip(Object value) {
+        return Codec.BINARY.unmarshall(Codec.BINARY.marshall(value));
+    }
+}
@@ -10,6 +10,8 @@ import info.android15.valuemap.BuildConfig;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class, sdk = 21)
@@ -46,4 +48,45 @@ public class BuilderTest {
         out.put("1", 1);
         assertEquals(1, out.build().get("1"));
     }
+
+    @Test
+    public void testBuildWithoutChangesReturnsTheSameMap() throws Exception {
+        ValueMap.Builder out = new ValueMap.Builder();
+        out.put("1", 1);
+        out.child("2").put("3", 3);
+        assertSame(out.build(), out.build());
+    }
+
+    @Test
+    public void testOnlyChangedChildrenAreRebuilt() throws Exception {
+        ValueMap.Builder out = new ValueMap.Builder();
+        out.child("1").put("1", 1);
+        out.child("2").put("2", 2);
+        ValueMap map1 = out.build();
+
+        out.child("2").put("2", 3);
+        ValueMap map2 = out.build();
+
+        assertSame(map1.raw("1"), map2.raw("1"));
+        assertNotSame(map1.raw("2"), map2.raw("2"));
+        assertEquals(3, (int)map2.<ValueMap>get("2").get("2"));
+    }
+
+    @Test
+    public void testNestedChildChangeIsBuilt() throws Exception {
+        ValueMap.Builder out = new ValueMap.Builder();
+        out.child("1").child("2").put("3", 1);
+        out.build();
+        out.child("1").child("2").put("3", 2);
+        assertEquals(2, (int)out.build().<ValueMap>get("1").<ValueMap>get("2").get("3"));
+    }
+
+    @Test
+    public void testRemovedChildDoesNotAffectTheMap() throws Exception {
+        ValueMap.Builder out = new ValueMap.Builder();
+        ValueMap.Builder child = out.child("1");
+        out.remove("1");
+        child.put("2", 2);
+        assertFalse(out.build().containsKey("1"));
+    }
 }
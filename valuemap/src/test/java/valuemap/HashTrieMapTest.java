@@ -0,0 +1,102 @@
+package valuemap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import info.android15.valuemap.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class HashTrieMapTest {
+
+    @Test
+    public void testPlusMinus() throws Exception {
+        HashTrieMap map = HashTrieMap.EMPTY.plus("1", 1).plus("2", 2);
+        assertEquals(2, map.size());
+        assertEquals(1, map.get("1"));
+        assertEquals(2, map.get("2"));
+        assertNull(map.get("3"));
+
+        HashTrieMap map2 = map.minus("1");
+        assertEquals(1, map2.size());
+        assertFalse(map2.containsKey("1"));
+        assertTrue(map.containsKey("1"));
+    }
+
+    @Test
+    public void testNullKeyAndValue() throws Exception {
+        HashTrieMap map = HashTrieMap.EMPTY.plus(null, null);
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey(null));
+        assertNull(map.get(null));
+        assertEquals(0, map.minus(null).size());
+    }
+
+    @Test
+    public void testUnchangedMapIsShared() throws Exception {
+        Integer value = 1;
+        HashTrieMap map = HashTrieMap.EMPTY.plus("1", value);
+        assertSame(map, map.plus("1", value));
+        assertSame(map, map.minus("2"));
+    }
+
+    @Test
+    public void testCollisions() throws Exception {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        HashTrieMap map = HashTrieMap.EMPTY.plus("Aa", 1).plus("BB", 2).plus("C", 3);
+        assertEquals(1, map.get("Aa"));
+        assertEquals(2, map.get("BB"));
+        assertEquals(3, map.get("C"));
+        map = map.minus("Aa");
+        assertEquals(2, map.size());
+        assertNull(map.get("Aa"));
+        assertEquals(2, map.get("BB"));
+    }
+
+    @Test
+    public void testRandomOperations() throws Exception {
+        Random random = new Random(0);
+        HashMap<String, Object> expected = new HashMap<>();
+        HashTrieMap map = HashTrieMap.EMPTY;
+
+        for (int i = 0; i < 20000; i++) {
+            String key = key(random.nextInt(2000));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            }
+            else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+
+        int count = 0;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    private static String key(int i) {
+        // "Aa" + n and "BB" + n have the same hash code
+        return (i % 2 == 0 ? "Aa" : "BB") + (i / 2);
+    }
+}
@@ -0,0 +1,146 @@
+package valuemap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import info.android15.valuemap.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SnapshotMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testValues() throws Exception {
+        ArrayList<Integer> list = new ArrayList<>(Arrays.asList(1, 2, 3));
+        ValueMap map = ValueMap.builder()
+            .put("int", 1)
+            .put("string", "value")
+            .put("null", null)
+            .put("list", list)
+            .put(null, "null key")
+            .build();
+
+        ValueMap snapshot = snapshot(map);
+        assertEquals(5, snapshot.keys().size());
+        assertEquals(map.keys(), snapshot.keys());
+        assertEquals(1, snapshot.get("int"));
+        assertEquals("value", snapshot.get("string"));
+        assertTrue(snapshot.containsKey("null"));
+        assertNull(snapshot.get("null", "default"));
+        assertEquals(list, snapshot.get("list"));
+        assertNotSame(snapshot.get("list"), snapshot.get("list"));
+        assertEquals("null key", snapshot.get(null));
+        assertFalse(snapshot.containsKey("missing"));
+        assertEquals("default", snapshot.get("missing", "default"));
+    }
+
+    @Test
+    public void testImmutableValueIsDecodedOnce() throws Exception {
+        ValueMap snapshot = snapshot(ValueMap.map("string", "value"));
+        assertSame(snapshot.get("string"), snapshot.get("string"));
+    }
+
+    @Test
+    public void testChild() throws Exception {
+        ValueMap.Builder builder = ValueMap.builder().put("1", 1);
+        builder.child("child").put("2", 2).child("grandchild").put("3", 3);
+
+        ValueMap snapshot = snapshot(builder.build());
+        ValueMap child = snapshot.get("child");
+        assertEquals(2, child.get("2"));
+        assertEquals(3, ((ValueMap)child.get("grandchild")).get("3"));
+        assertEquals(builder.build(), snapshot);
+    }
+
+    @Test
+    public void testToBuilder() throws Exception {
+        ValueMap.Builder builder = snapshot(ValueMap.map("1", 1, "2", 2)).toBuilder();
+        builder.child("child").put("3", 3);
+        ValueMap map = builder.remove("1").build();
+
+        assertEquals(2, map.get("2"));
+        assertFalse(map.containsKey("1"));
+        assertEquals(3, ((ValueMap)map.get("child")).get("3"));
+    }
+
+    @Test
+    public void testHashCollisions() throws Exception {
+        // "Aa" and "BB" have the same hash code
+        ValueMap snapshot = snapshot(ValueMap.map("Aa", 1, "BB", 2, "AaAa", 3, "BBBB", 4, "AaBB", 5));
+        assertEquals(1, snapshot.get("Aa"));
+        assertEquals(2, snapshot.get("BB"));
+        assertEquals(3, snapshot.get("AaAa"));
+        assertEquals(4, snapshot.get("BBBB"));
+        assertEquals(5, snapshot.get("AaBB"));
+        assertFalse(snapshot.containsKey("BBAa"));
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        Random random = new Random(0);
+        HashMap<String, Object> expected = new HashMap<>();
+        ValueMap.Builder builder = ValueMap.builder();
+        for (int i = 0; i < 1000; i++) {
+            String key = Integer.toString(random.nextInt(), 36);
+            expected.put(key, i);
+            builder.put(key, i);
+        }
+
+        SnapshotMap map = new SnapshotMap(ByteBuffer.wrap(builder.build().snapshot()), 0, null);
+        assertEquals(expected, map);
+        for (String key : expected.keySet())
+            assertEquals(expected.get(key), map.get(key));
+    }
+
+    @Test
+    public void testRewriteRestored() throws Exception {
+        ValueMap.Builder builder = ValueMap.builder().put("1", 1);
+        builder.child("child").put("2", 2);
+
+        ValueMap snapshot = snapshot(builder.build());
+        byte[] bytes = snapshot.snapshot();
+        assertEquals(snapshot, new ValueMap(new SnapshotMap(ByteBuffer.wrap(bytes), 0, null)));
+
+        ValueMap child = snapshot.get("child");
+        ValueMap map = ValueMap.builder().put("child", child).build();
+        assertEquals(child, ((ValueMap)new ValueMap(new SnapshotMap(ByteBuffer.wrap(map.snapshot()), 0, null)).get("child")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotSnapshot() throws Exception {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        out.close();
+        ValueMap.openSnapshot(file);
+    }
+
+    private ValueMap snapshot(ValueMap map) throws IOException {
+        File file = new File(folder.getRoot(), "snapshot");
+        map.writeSnapshot(file);
+        return ValueMap.openSnapshot(file);
+    }
+}
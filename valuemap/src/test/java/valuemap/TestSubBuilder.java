@@ -5,10 +5,13 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.HashMap;
+
 import info.android15.valuemap.BuildConfig;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class, sdk = 21)
@@ -53,4 +56,19 @@ public class TestSubBuilder {
         ValueMap sub = map.build().get("sub_key");
         assertEquals(2, sub.get("value_key"));
     }
+
+    @Test
+    public void child_value_map_is_not_marshalled() throws Exception {
+        ValueMap.Builder builder = ValueMap.builder();
+        builder.child("sub_key").put("value_key", 1);
+        assertSame(builder.child("sub_key").build(), builder.build().get("sub_key"));
+    }
+
+    @Test
+    public void returns_child_builder_of_a_marshalled_value_map() throws Exception {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("sub_key", ParcelFn.marshall(ValueMap.map("value_key", 1)));
+        ValueMap.Builder builder = new ValueMap(map).toBuilder();
+        assertEquals(1, builder.child("sub_key").build().get("value_key"));
+    }
 }
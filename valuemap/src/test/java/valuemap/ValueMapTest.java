@@ -1,10 +1,16 @@
 package valuemap;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashSet;
 
 import info.android15.valuemap.BuildConfig;
@@ -13,12 +19,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class, sdk = 21)
 public class ValueMapTest {
 
+    @After
+    public void tearDown() throws Exception {
+        ValueMap.unregisterImmutable(Counted.class);
+        ValueMap.unregisterImmutable(ImmutableValue.class);
+    }
+
     @Test
     public void testEmpty() throws Exception {
         assertEquals(0, ValueMap.empty().keys().size());
@@ -110,6 +124,164 @@ public class ValueMapTest {
         assertEquals(0, map.describeContents());
     }
 
+    @Test
+    public void testParcelInline() throws Exception {
+        ValueMap map = ValueMap.map("1", 1, "2", "2");
+        assertEquals(map, writeReadParcel(map));
+    }
+
+    @Test
+    public void testParcelSnapshot() throws Exception {
+        File file = File.createTempFile("snapshot", null);
+        try {
+            ValueMap.map("1", 1, "2", "2").writeSnapshot(file);
+            ValueMap snapshot = ValueMap.openSnapshot(file);
+            assertEquals(snapshot, writeReadParcel(snapshot));
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testParcelMissingSnapshot() throws Exception {
+        File file = File.createTempFile("snapshot", null);
+        ValueMap.map("1", 1).writeSnapshot(file);
+        ValueMap snapshot = ValueMap.openSnapshot(file);
+        Parcel parcel = Parcel.obtain();
+        try {
+            snapshot.writeToParcel(parcel, 0);
+            assertTrue(file.delete());
+            parcel.setDataPosition(0);
+            assertEquals(ValueMap.empty(), ValueMap.CREATOR.createFromParcel(parcel));
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void testParcelNested() throws Exception {
+        ArrayList<Integer> list = new ArrayList<>();
+        list.add(3);
+        ValueMap.Builder builder = ValueMap.builder().put("list", list);
+        builder.child("child").put("2", 2).child("grandchild").put("3", "3");
+        ValueMap map = builder.build();
+
+        ValueMap restored = writeReadParcel(map);
+        assertEquals(map.keys(), restored.keys());
+        assertEquals(list, restored.get("list"));
+        ValueMap child = restored.get("child");
+        assertSame(child, restored.get("child"));
+        assertEquals(map.get("child"), child);
+        assertEquals(2, (int)child.get("2"));
+        assertEquals("3", child.<ValueMap>get("grandchild").get("3"));
+
+        ValueMap again = writeReadParcel(restored);
+        assertEquals(list, again.get("list"));
+        assertEquals(map.get("child"), again.get("child"));
+        assertEquals(map.get("child"), writeReadParcel(child));
+    }
+
+    @Test
+    public void testParcelLazy() throws Exception {
+        ValueMap.registerImmutable(Counted.class);
+        ValueMap.Builder builder = ValueMap.builder().put("1", new Counted(1));
+        builder.child("child").put("2", new Counted(2));
+        ValueMap map = builder.build();
+
+        Counted.created = 0;
+        ValueMap restored = writeReadParcel(map);
+        assertEquals(0, Counted.created);
+
+        assertEquals(1, restored.<Counted>get("1").value);
+        assertEquals(1, Counted.created);
+        assertEquals(1, restored.<Counted>get("1").value);
+        assertEquals(1, Counted.created);
+
+        ValueMap child = restored.get("child");
+        assertEquals(1, Counted.created);
+        assertEquals(2, child.<Counted>get("2").value);
+        assertEquals(2, Counted.created);
+    }
+
+    public static class Counted implements Parcelable {
+
+        static int created;
+
+        final int value;
+
+        Counted(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            dest.writeInt(value);
+        }
+
+        public static final Creator<Counted> CREATOR = new Creator<Counted>() {
+            @Override
+            public Counted createFromParcel(Parcel source) {
+                created++;
+                return new Counted(source.readInt());
+            }
+
+            @Override
+            public Counted[] newArray(int size) {
+                return new Counted[size];
+            }
+        };
+    }
+
+    private static ValueMap writeReadParcel(ValueMap map) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            map.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return ValueMap.CREATOR.createFromParcel(parcel);
+        }
+        finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void testCachingView() throws Exception {
+        ArrayList<Object> list = new ArrayList<>();
+        list.add(1);
+        list.add(new int[]{2});
+        ValueMap map = ValueMap.map("1", 1, "2", list).cachingView();
+
+        assertSame(map, map.cachingView());
+        assertEquals(1, (int)map.get("1"));
+
+        ArrayList<Object> value1 = map.get("2");
+        assertEquals(1, value1.get(0));
+        ((int[])value1.get(1))[0] = 3;
+        value1.clear();
+
+        ArrayList<Object> value2 = map.get("2");
+        assertNotSame(value1, value2);
+        assertEquals(2, value2.size());
+        assertEquals(2, ((int[])value2.get(1))[0]);
+    }
+
+    @Test
+    public void testRegisterImmutable() throws Exception {
+        ValueMap.registerImmutable(ImmutableValue.class);
+        ImmutableValue value = new ImmutableValue();
+        assertSame(value, ValueMap.map("1", value).get("1"));
+    }
+
+    private static class ImmutableValue {
+    }
+
     private HashSet getSetString123() {
         HashSet hashSet = new HashSet();
         hashSet.add("1");
@@ -40,6 +40,12 @@ public class MainActivity extends AppCompatActivity {
 
         printResult("string", time1, result);
 
+        long time6 = System.nanoTime() / 1000000;
+        for (int i = 0; i < ITERATIONS; i++)
+            ParcelFnBenchmark.testStringParcelCodec();
+
+        printResult("stringParcelCodec", time6, result);
+
         long time2 = System.nanoTime() / 1000000;
         for (int i = 0; i < ITERATIONS; i++)
             ParcelFnBenchmark.testInteger();
@@ -52,6 +58,12 @@ public class MainActivity extends AppCompatActivity {
 
         printResult("combinedMap", time3, result);
 
+        long time7 = System.nanoTime() / 1000000;
+        for (int i = 0; i < ITERATIONS; i++)
+            ParcelFnBenchmark.testCachingCombinedMap();
+
+        printResult("cachingCombinedMap", time7, result);
+
         long time4 = System.nanoTime() / 1000000;
         for (int i = 0; i < ITERATIONS; i++)
             ParcelFnBenchmark.testJavaMap();
@@ -9,6 +9,7 @@ public class ParcelFnBenchmark {
 
     private static final String STRING = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.";
     private static final ValueMap MAP_COMBINED = ValueMap.map("1", 1, "2", STRING, "3", new Bundle());
+    private static final ValueMap MAP_COMBINED_CACHING = MAP_COMBINED.cachingView();
     private static final ValueMap MAP_IMMUTABLE = ValueMap.map("1", 1, "2", STRING, "3", new BigInteger("12"));
     private static final Integer INTEGER = 1;
     private static final HashMap<String, Object> JAVA_MAP = new HashMap<String, Object>() {{
@@ -21,6 +22,10 @@ public class ParcelFnBenchmark {
         ParcelFn.unmarshall(ParcelFn.marshall(STRING));
     }
 
+    public static void testStringParcelCodec() {
+        Codec.PARCEL.unmarshall(Codec.PARCEL.marshall(STRING));
+    }
+
     public static void testInteger() {
         ParcelFn.unmarshall(ParcelFn.marshall(INTEGER));
     }
@@ -36,6 +41,13 @@ public class ParcelFnBenchmark {
         MAP_COMBINED.get("4");
     }
 
+    public static void testCachingCombinedMap() {
+        MAP_COMBINED_CACHING.get("1");
+        MAP_COMBINED_CACHING.get("2");
+        MAP_COMBINED_CACHING.get("3");
+        MAP_COMBINED_CACHING.get("4");
+    }
+
     public static void testImmutableMap() {
         MAP_IMMUTABLE.get("1");
         MAP_IMMUTABLE.get("2");